@@ -0,0 +1,58 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.*;
+import pers.zyc.tools.network.benchmark.Ping;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 响应Promise创建、完成的开销，ResponsePromise包内可见因此基准测试位于同一个包
+ *
+ * 配合-prof gc执行查看每次操作的分配量（gc.alloc.rate.norm）
+ *
+ * @author zhangyancheng
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponsePromiseBenchmark {
+
+	private NetService netService;
+	private Request request;
+	private Response response;
+
+	@Setup
+	public void setup() {
+		//只用于创建Promise，无需启动
+		netService = new NetClient();
+		request = new Ping(new byte[0]);
+		response = new Response(0, request.getId()) {
+
+			@Override
+			protected void encodeBody(ByteBuf byteBuf) {
+			}
+
+			@Override
+			protected void decodeBody(ByteBuf byteBuf) {
+			}
+		};
+	}
+
+	@Benchmark
+	public ResponsePromise createAndRespond() {
+		ResponsePromise promise = new ResponsePromise(netService, request, 3000, null);
+		promise.response(response);
+		return promise;
+	}
+
+	@Benchmark
+	public Response createRespondAndGet() throws InterruptedException {
+		ResponsePromise promise = new ResponsePromise(netService, request, 3000, null);
+		promise.response(response);
+		return promise.get();
+	}
+}
@@ -0,0 +1,102 @@
+package pers.zyc.tools.network.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import pers.zyc.tools.network.Header;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 命令头、命令编解码吞吐
+ *
+ * @author zhangyancheng
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+	/**
+	 * 命令体负载大小（byte）
+	 */
+	@Param({"0", "128", "1024"})
+	public int payloadSize;
+
+	private ByteBuf buffer;
+	private Header header;
+	private Ping ping;
+
+	/**
+	 * 已编码的命令头
+	 */
+	private ByteBuf encodedHeader;
+
+	/**
+	 * 已编码的命令（不含长度）
+	 */
+	private ByteBuf encodedCommand;
+
+	@Setup
+	public void setup() throws Exception {
+		buffer = PooledByteBufAllocator.DEFAULT.directBuffer(64 + payloadSize);
+		ping = new Ping(new byte[payloadSize]);
+		header = ping.getHeader();
+
+		encodedHeader = PooledByteBufAllocator.DEFAULT.directBuffer(64);
+		header.encode(encodedHeader);
+
+		encodedCommand = PooledByteBufAllocator.DEFAULT.directBuffer(64 + payloadSize);
+		ping.encode(encodedCommand);
+		encodedCommand.skipBytes(3);
+	}
+
+	@TearDown
+	public void tearDown() {
+		buffer.release();
+		encodedHeader.release();
+		encodedCommand.release();
+	}
+
+	@Benchmark
+	public ByteBuf encodeHeader() throws Exception {
+		buffer.clear();
+		header.encode(buffer);
+		return buffer;
+	}
+
+	@Benchmark
+	public Header decodeHeader() throws Exception {
+		Header decoded = new Header();
+		decoded.decode(encodedHeader.duplicate());
+		return decoded;
+	}
+
+	@Benchmark
+	public Header decodeRecycledHeader() throws Exception {
+		Header decoded = Header.newInstance();
+		decoded.decode(encodedHeader.duplicate());
+		decoded.recycle();
+		return decoded;
+	}
+
+	@Benchmark
+	public ByteBuf encodeCommand() throws Exception {
+		buffer.clear();
+		ping.encode(buffer);
+		return buffer;
+	}
+
+	@Benchmark
+	public Ping decodeCommand() throws Exception {
+		ByteBuf frame = encodedCommand.duplicate();
+		Header decodedHeader = new Header();
+		decodedHeader.decode(frame);
+		Ping decoded = new Ping(decodedHeader);
+		decoded.decode(frame);
+		return decoded;
+	}
+}
@@ -0,0 +1,97 @@
+package pers.zyc.tools.network.benchmark;
+
+import io.netty.channel.Channel;
+import org.openjdk.jmh.annotations.*;
+import pers.zyc.tools.network.ResponseFuture;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写合并与显式flush对消息吞吐（messages/sec）的影响，每次调用异步发送一批请求后等待全部响应
+ *
+ * flushConsolidationLimit为0时不合并；explicitFlush为true时整批请求只写入出站缓冲，最后调用一次flush，
+ * 否则每个请求发送时flush
+ *
+ * @author zhangyancheng
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class FlushBatchingBenchmark {
+
+	/**
+	 * 每次调用发送的请求数
+	 */
+	private static final int BATCH = 64;
+
+	private static final int REQUEST_TIMEOUT = 10000;
+
+	private static final byte[] PAYLOAD = new byte[128];
+
+	/**
+	 * 服务端和客户端写合并的最多flush次数，0表示不合并
+	 */
+	@Param({"0", "256"})
+	public int flushConsolidationLimit;
+
+	/**
+	 * 是否整批请求只flush一次
+	 */
+	@Param({"false", "true"})
+	public boolean explicitFlush;
+
+	private Loopback loopback;
+
+	@Setup
+	public void setup() {
+		loopback = new Loopback(19503, 2);
+		loopback.setFlushConsolidationLimit(flushConsolidationLimit);
+		loopback.start();
+	}
+
+	@TearDown
+	public void tearDown() {
+		loopback.stop();
+	}
+
+	/**
+	 * 压测线程的连接
+	 */
+	@State(Scope.Thread)
+	public static class ThreadChannel {
+
+		Channel channel;
+		final ResponseFuture[] futures = new ResponseFuture[BATCH];
+
+		@Setup
+		public void setup(FlushBatchingBenchmark benchmark) {
+			channel = benchmark.loopback.connect();
+		}
+
+		@TearDown
+		public void tearDown() {
+			channel.close();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void sendBatch(ThreadChannel threadChannel) throws InterruptedException {
+		ResponseFuture[] futures = threadChannel.futures;
+		for (int i = 0; i < BATCH; i++) {
+			Ping ping = new Ping(PAYLOAD);
+			ping.setChannel(threadChannel.channel);
+			futures[i] = loopback.client().sendAsync(ping, REQUEST_TIMEOUT, !explicitFlush);
+		}
+		if (explicitFlush) {
+			loopback.client().flush(threadChannel.channel);
+		}
+		for (ResponseFuture future : futures) {
+			future.get();
+		}
+	}
+}
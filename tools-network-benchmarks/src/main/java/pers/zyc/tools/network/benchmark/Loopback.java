@@ -0,0 +1,90 @@
+package pers.zyc.tools.network.benchmark;
+
+import io.netty.channel.Channel;
+import pers.zyc.tools.network.*;
+
+/**
+ * 本机回环上的服务端和客户端，服务端在IO线程中直接应答{@link Ping}
+ *
+ * @author zhangyancheng
+ */
+class Loopback {
+
+	private static final String HOST = "127.0.0.1";
+
+	private final NetServer netServer = new NetServer();
+	private final NetClient netClient = new NetClient();
+
+	/**
+	 * @param port 服务端口
+	 * @param selectors 服务端和客户端的IO线程数
+	 */
+	Loopback(int port, int selectors) {
+		DefaultCommandFactory commandFactory = new DefaultCommandFactory();
+		commandFactory.register(Ping.CMD_TYPE, new CommandFactory() {
+
+			@Override
+			public Command createByHeader(Header header) {
+				return new Ping(header);
+			}
+		});
+		commandFactory.register(Pong.CMD_TYPE, new CommandFactory() {
+
+			@Override
+			public Command createByHeader(Header header) {
+				return new Pong(header);
+			}
+		});
+
+		DefaultRequestHandlerFactory requestHandlerFactory = new DefaultRequestHandlerFactory();
+		requestHandlerFactory.register(new SingleTypeRequestHandler<Ping>() {
+
+			@Override
+			public int supportedRequestType() {
+				return Ping.CMD_TYPE;
+			}
+
+			@Override
+			protected Response handle0(Ping ping) {
+				return new Pong(ping.getId());
+			}
+		});
+
+		netServer.setPort(port);
+		netServer.setSelectors(selectors);
+		netServer.setCommandFactory(commandFactory);
+		netServer.setRequestHandlerFactory(requestHandlerFactory);
+		netClient.setSelectors(selectors);
+		netClient.setCommandFactory(commandFactory);
+	}
+
+	/**
+	 * 服务端和客户端开启写合并，需在启动前设置
+	 *
+	 * @param flushConsolidationLimit 最多合并的flush次数，0表示不合并
+	 */
+	void setFlushConsolidationLimit(int flushConsolidationLimit) {
+		netServer.setFlushConsolidationLimit(flushConsolidationLimit);
+		netClient.setFlushConsolidationLimit(flushConsolidationLimit);
+		//客户端请求由业务线程发出，合并非读取期间的flush
+		netClient.setFlushConsolidateWhenNoReadInProgress(true);
+	}
+
+	void start() {
+		netServer.start();
+		netClient.start();
+	}
+
+	void stop() {
+		netClient.stop();
+		netServer.stop();
+	}
+
+	Channel connect() {
+		return netClient.createChannel(HOST, netServer.getPort());
+	}
+
+	NetClient client() {
+		return netClient;
+	}
+}
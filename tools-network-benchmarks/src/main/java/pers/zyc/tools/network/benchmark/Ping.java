@@ -0,0 +1,48 @@
+package pers.zyc.tools.network.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import pers.zyc.tools.network.Header;
+import pers.zyc.tools.network.Request;
+
+/**
+ * 基准测试请求，与心跳命令结构相同（命令体为可选的负载），但需要应答以测量往返时间
+ *
+ * @author zhangyancheng
+ */
+public class Ping extends Request {
+
+	public static final int CMD_TYPE = 100;
+
+	private byte[] payload;
+
+	public Ping(byte[] payload) {
+		super(CMD_TYPE);
+		this.payload = payload;
+	}
+
+	public Ping(Header header) {
+		super(header);
+	}
+
+	@Override
+	public int getEstimatedSize() {
+		return 4 + payload.length;
+	}
+
+	@Override
+	protected void encodeBody(ByteBuf byteBuf) throws Exception {
+		byteBuf.writeInt(payload.length);
+		byteBuf.writeBytes(payload);
+	}
+
+	@Override
+	protected void decodeBody(ByteBuf byteBuf) throws Exception {
+		payload = new byte[byteBuf.readInt()];
+		byteBuf.readBytes(payload);
+	}
+
+	@Override
+	public String toString() {
+		return "Ping{id:" + getId() + "}";
+	}
+}
@@ -0,0 +1,36 @@
+package pers.zyc.tools.network.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import pers.zyc.tools.network.Header;
+import pers.zyc.tools.network.Response;
+
+/**
+ * 基准测试响应，无命令体
+ *
+ * @author zhangyancheng
+ */
+public class Pong extends Response {
+
+	public static final int CMD_TYPE = 101;
+
+	public Pong(int requestId) {
+		super(CMD_TYPE, requestId);
+	}
+
+	public Pong(Header header) {
+		super(header);
+	}
+
+	@Override
+	protected void encodeBody(ByteBuf byteBuf) throws Exception {
+	}
+
+	@Override
+	protected void decodeBody(ByteBuf byteBuf) throws Exception {
+	}
+
+	@Override
+	public String toString() {
+		return "Pong{id:" + getId() + "}";
+	}
+}
@@ -0,0 +1,52 @@
+package pers.zyc.tools.network.benchmark;
+
+import io.netty.channel.Channel;
+import org.openjdk.jmh.annotations.*;
+import pers.zyc.tools.network.Response;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本机回环同步请求往返时间，SampleTime模式输出时间分位数（p50、p99、p99.99等）
+ *
+ * @author zhangyancheng
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+	/**
+	 * 请求负载大小（byte）
+	 */
+	@Param({"0", "1024"})
+	public int payloadSize;
+
+	private Loopback loopback;
+	private Channel channel;
+	private byte[] payload;
+
+	@Setup
+	public void setup() {
+		loopback = new Loopback(19501, 1);
+		loopback.start();
+		channel = loopback.connect();
+		payload = new byte[payloadSize];
+	}
+
+	@TearDown
+	public void tearDown() {
+		channel.close();
+		loopback.stop();
+	}
+
+	@Benchmark
+	public Response sendSync() throws InterruptedException {
+		Ping ping = new Ping(payload);
+		ping.setChannel(channel);
+		return loopback.client().sendSync(ping);
+	}
+}
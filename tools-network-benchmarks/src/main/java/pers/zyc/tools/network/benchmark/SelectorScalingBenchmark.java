@@ -0,0 +1,69 @@
+package pers.zyc.tools.network.benchmark;
+
+import io.netty.channel.Channel;
+import org.openjdk.jmh.annotations.*;
+import pers.zyc.tools.network.Response;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求吞吐随IO线程数（selectors）的变化，每个压测线程使用独立连接，连接均匀分布到各IO线程
+ *
+ * @author zhangyancheng
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class SelectorScalingBenchmark {
+
+	/**
+	 * 服务端和客户端的IO线程数
+	 */
+	@Param({"1", "2", "4", "8"})
+	public int selectors;
+
+	private Loopback loopback;
+
+	private static final byte[] PAYLOAD = new byte[128];
+
+	@Setup
+	public void setup() {
+		loopback = new Loopback(19502, selectors);
+		loopback.start();
+	}
+
+	@TearDown
+	public void tearDown() {
+		loopback.stop();
+	}
+
+	/**
+	 * 压测线程的连接
+	 */
+	@State(Scope.Thread)
+	public static class ThreadChannel {
+
+		Channel channel;
+
+		@Setup
+		public void setup(SelectorScalingBenchmark benchmark) {
+			channel = benchmark.loopback.connect();
+		}
+
+		@TearDown
+		public void tearDown() {
+			channel.close();
+		}
+	}
+
+	@Benchmark
+	public Response sendSync(ThreadChannel threadChannel) throws InterruptedException {
+		Ping ping = new Ping(PAYLOAD);
+		ping.setChannel(threadChannel.channel);
+		return loopback.client().sendSync(ping);
+	}
+}
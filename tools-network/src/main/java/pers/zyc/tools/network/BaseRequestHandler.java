@@ -19,7 +19,9 @@ public abstract class BaseRequestHandler implements RequestHandler {
 	};
 
 	/**
-	 * 请求处理执行器
+	 * 请求处理执行器，默认在IO线程中处理（处理不能阻塞），阻塞的处理需设置执行器
+	 *
+	 * @see RequestExecutors
 	 */
 	private Executor executor = SYNC_EXECUTOR;
 
@@ -0,0 +1,254 @@
+package pers.zyc.tools.network;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pers.zyc.tools.utils.BatchFetchQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 批量请求处理器，将一段时间窗口内（或者达到批量上限）到达的同类型请求合并为一批处理，
+ * 例如将多次数据库、Redis访问合并为一次，负载越高合并效果越好
+ *
+ * 请求在IO线程中放入批量队列（{@link BatchFetchQueue}），队列满时响应{@link NetworkException.TooMuchRequestException}；
+ * 第一个请求到达时在执行器中开始收集，等待批量窗口或者达到批量上限后调用{@link #handleBatch(List)}，
+ * 按顺序写出每个请求的响应。同一处理器的批次依次处理，不会并发。
+ * 需要通过{@link DefaultRequestHandlerFactory#register(int, BaseRequestHandler, java.util.concurrent.Executor)}
+ * 设置执行器（注册时检查，不能在IO线程中收集），没有执行器时每个请求在IO线程中作为一批单独处理（{@link #handle(Request)}）
+ *
+ * 处理一批请求期间发出的下游请求继承批次中最晚的截止时间（{@link RequestContext}），
+ * 有请求没有截止时间时不限制，截止时间较早的请求方可能已超时，但不影响同批其他请求
+ *
+ * 开启命令回收时请求在响应写出后回收
+ *
+ * @author zhangyancheng
+ */
+public abstract class BatchingRequestHandler<R extends Request> extends BaseRequestHandler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BatchingRequestHandler.class);
+
+	/**
+	 * 批量队列
+	 */
+	private final BatchFetchQueue<PendingRequest> batchQueue;
+
+	/**
+	 * 每批最多请求数
+	 */
+	private final int maxBatchSize;
+
+	/**
+	 * 批量窗口（ms），第一个请求到达后最多等待的时间
+	 */
+	private final int batchWindow;
+
+	/**
+	 * 是否已提交收集任务到执行器
+	 */
+	private final AtomicBoolean draining = new AtomicBoolean();
+
+	private final Runnable drainTask = new Runnable() {
+
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	/**
+	 * @param maxBatchSize 每批最多请求数
+	 * @param batchWindow 批量窗口（ms）
+	 * @param queueCapacity 批量队列容量，排队请求超过容量时拒绝
+	 */
+	public BatchingRequestHandler(int maxBatchSize, int batchWindow, int queueCapacity) {
+		if (maxBatchSize <= 0) {
+			throw new IllegalArgumentException("maxBatchSize " + maxBatchSize + " <= 0");
+		}
+		if (batchWindow < 0) {
+			throw new IllegalArgumentException("batchWindow " + batchWindow + " < 0");
+		}
+		this.maxBatchSize = maxBatchSize;
+		this.batchWindow = batchWindow;
+		this.batchQueue = new BatchFetchQueue<>(queueCapacity);
+	}
+
+	/**
+	 * 批量处理请求
+	 *
+	 * @param requests 请求（按到达顺序）
+	 * @return 与请求一一对应的响应，元素为null表示对应请求不需要响应
+	 * @throws Exception 处理异常，所有请求都通过异常处理器响应
+	 */
+	protected abstract List<Response> handleBatch(List<R> requests) throws Exception;
+
+	/**
+	 * 单个请求作为一批处理，不经过批量队列，在调用线程中执行
+	 *
+	 * @param request 请求
+	 * @return 响应
+	 * @throws Exception 处理异常
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public final Response handle(Request request) throws Exception {
+		List<Response> responses = handleBatch(Collections.singletonList((R) request));
+		checkResponses(1, responses);
+		return responses.get(0);
+	}
+
+	private static void checkResponses(int requests, List<Response> responses) {
+		if (responses == null || responses.size() != requests) {
+			throw new IllegalStateException("Batch of " + requests + " requests got " +
+					(responses == null ? 0 : responses.size()) + " responses");
+		}
+	}
+
+	/**
+	 * IO线程中调用，请求放入批量队列
+	 *
+	 * @param netService 收到请求的服务
+	 * @param request 请求
+	 */
+	void submit(NetService netService, Request request) {
+		if (!batchQueue.add(new PendingRequest(netService, request))) {
+			netService.writeResponse(request,
+					netService.handleRequestException(new NetworkException.TooMuchRequestException(), request));
+			return;
+		}
+		if (draining.compareAndSet(false, true)) {
+			try {
+				getExecutor().execute(drainTask);
+			} catch (RejectedExecutionException e) {
+				//执行器饱和或者已关闭，拒绝所有排队请求
+				draining.set(false);
+				for (PendingRequest pendingRequest : batchQueue.fetchAll()) {
+					pendingRequest.netService.writeResponse(pendingRequest.request,
+							pendingRequest.netService.handleRequestException(
+									new NetworkException.TooMuchRequestException(), pendingRequest.request));
+					pendingRequest.recycle();
+				}
+			}
+		}
+	}
+
+	private void drain() {
+		for (;;) {
+			List<PendingRequest> batch;
+			try {
+				batch = batchQueue.tryFetchMost(maxBatchSize, batchWindow, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				//执行器关闭，队列中的请求由请求方超时
+				draining.set(false);
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (!batch.isEmpty()) {
+				process(batch);
+			}
+			if (batchQueue.isEmpty()) {
+				draining.set(false);
+				//退出前可能有新请求放入（放入线程看到仍在收集而没有提交任务）
+				if (batchQueue.isEmpty() || !draining.compareAndSet(false, true)) {
+					return;
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void process(List<PendingRequest> batch) {
+		List<R> requests = new ArrayList<>(batch.size());
+		List<PendingRequest> pendingRequests = new ArrayList<>(batch.size());
+		long deadline = 0;
+		boolean unbounded = false;
+		for (PendingRequest pendingRequest : batch) {
+			if (pendingRequest.request.getHeader().isExpired()) {
+				//排队期间已过截止时间，请求方已超时
+				LOGGER.debug("Request: {} expired, dropped", pendingRequest.request);
+				pendingRequest.recycle();
+			} else if (pendingRequest.netService.isExpired(pendingRequest.request)) {
+				//超过服务端请求过期时间，与非批量请求相同以过期异常响应
+				pendingRequest.netService.writeResponse(pendingRequest.request,
+						pendingRequest.netService.handleRequestException(
+								new NetworkException.RequestExpiredException(), pendingRequest.request));
+				pendingRequest.recycle();
+			} else {
+				requests.add((R) pendingRequest.request);
+				pendingRequests.add(pendingRequest);
+				long requestDeadline = pendingRequest.request.getHeader().getDeadline();
+				if (requestDeadline > 0) {
+					deadline = Math.max(deadline, requestDeadline);
+				} else {
+					unbounded = true;
+				}
+			}
+		}
+		if (requests.isEmpty()) {
+			return;
+		}
+
+		List<Response> responses = null;
+		Exception cause = null;
+		long beginNanos = System.nanoTime();
+		Long previousDeadline = RequestContext.enter(unbounded ? 0 : deadline);
+		try {
+			responses = handleBatch(requests);
+			checkResponses(requests.size(), responses);
+		} catch (Exception e) {
+			cause = e;
+		} finally {
+			RequestContext.restore(previousDeadline);
+		}
+		long handleNanos = System.nanoTime() - beginNanos;
+		for (int i = 0; i < pendingRequests.size(); i++) {
+			PendingRequest pendingRequest = pendingRequests.get(i);
+			pendingRequest.netService.getNetworkMetrics().requestHandled(pendingRequest.request,
+					beginNanos - pendingRequest.submitNanos, handleNanos);
+			Response response = cause == null ? responses.get(i) :
+					pendingRequest.netService.handleRequestException(cause, pendingRequest.request);
+			pendingRequest.netService.writeResponse(pendingRequest.request, response);
+			pendingRequest.recycle();
+		}
+	}
+
+	/**
+	 * @return 批量队列中等待处理的请求是否为空
+	 */
+	public boolean isIdle() {
+		return batchQueue.isEmpty();
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	public int getBatchWindow() {
+		return batchWindow;
+	}
+
+	/**
+	 * 排队中的请求及收到请求的服务
+	 */
+	private static class PendingRequest {
+
+		final NetService netService;
+		final Request request;
+		final long submitNanos = System.nanoTime();
+
+		PendingRequest(NetService netService, Request request) {
+			this.netService = netService;
+			this.request = request;
+		}
+
+		void recycle() {
+			if (netService.isRecycleCommands()) {
+				request.recycle();
+			}
+		}
+	}
+}
@@ -34,6 +34,12 @@ public class ChannelEvent extends SourcedEvent<NetService> {
 		 */
 		ALL_IDLE,
 
+		/**
+		 * 连接可写状态变化（写缓冲超过高水位变为不可写，降到低水位以下恢复可写），
+		 * 可通过{@link Channel#isWritable()}获取当前状态
+		 */
+		WRITABILITY_CHANGED,
+
 		/**
 		 * 连接异常
 		 */
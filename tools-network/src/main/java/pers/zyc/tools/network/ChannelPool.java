@@ -0,0 +1,540 @@
+package pers.zyc.tools.network;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pers.zyc.tools.utils.SystemMillis;
+import pers.zyc.tools.utils.event.EventListener;
+import pers.zyc.tools.utils.lifecycle.Service;
+import pers.zyc.tools.utils.lifecycle.ServiceException;
+
+import java.net.SocketAddress;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接池，作为一个逻辑端点向多个远端地址发送请求
+ *
+ * 每个远端地址建立固定个数的连接，连接异步建立，连接失败或者关闭（{@link ChannelEvent.EventType#CLOSE}）后按指数退避重连，
+ * 发送请求时通过{@link ChannelSelector}在已连接的连接中选择一个
+ *
+ * @author zhangyancheng
+ */
+public class ChannelPool extends Service implements EventListener<ChannelEvent> {
+
+	/**
+	 * Channel保存所属连接槽键
+	 */
+	private static final AttributeKey<Slot> SLOT_KEY = AttributeKey.newInstance("CHANNEL_POOL_SLOT");
+
+	/**
+	 * 建立连接的客户端
+	 */
+	private final NetClient netClient;
+
+	/**
+	 * 远端地址
+	 */
+	private final List<SocketAddress> remoteAddresses;
+
+	/**
+	 * 连接槽，每个槽维护一个连接
+	 */
+	private final List<Slot> slots = new ArrayList<>();
+
+	/**
+	 * 每个远端地址的连接数
+	 */
+	private int channelsPerAddress = 1;
+
+	/**
+	 * 连接选择策略
+	 */
+	private ChannelSelector channelSelector = new ChannelSelector.RoundRobin();
+
+	/**
+	 * 对冲策略
+	 */
+	private HedgingPolicy hedgingPolicy = new HedgingPolicy();
+
+	/**
+	 * 首次重连延迟（ms）
+	 */
+	private int reconnectDelay = 100;
+
+	/**
+	 * 最大重连延迟（ms）
+	 */
+	private int maxReconnectDelay = 10000;
+
+	/**
+	 * 连接稳定时间（ms），连接保持超过此时间后关闭才清零重连次数，
+	 * 避免对端接受连接后立即断开时不经退避反复重连
+	 */
+	private int stableConnectionTime = 5000;
+
+	/**
+	 * 当前可用的连接（不可修改，连接变化时整体替换）
+	 */
+	private volatile List<Channel> activeChannels = Collections.emptyList();
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public ChannelPool(NetClient netClient, Collection<? extends SocketAddress> remoteAddresses) {
+		if (remoteAddresses.isEmpty()) {
+			throw new IllegalArgumentException("No remote address");
+		}
+		this.netClient = Objects.requireNonNull(netClient);
+		this.remoteAddresses = new ArrayList<>(remoteAddresses);
+	}
+
+	@Override
+	protected void beforeStart() throws Exception {
+		netClient.checkRunning();
+		if (channelsPerAddress <= 0) {
+			throw new IllegalArgumentException("channelsPerAddress " + channelsPerAddress + " <= 0");
+		}
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		netClient.addListener(this);
+		synchronized (slots) {
+			for (SocketAddress remoteAddress : remoteAddresses) {
+				for (int i = 0; i < channelsPerAddress; i++) {
+					slots.add(new Slot(remoteAddress));
+				}
+			}
+		}
+		for (Slot slot : slots) {
+			connect(slot);
+		}
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		netClient.removeListener(this);
+		List<Channel> channels = new ArrayList<>();
+		synchronized (slots) {
+			for (Slot slot : slots) {
+				synchronized (slot) {
+					slot.closed = true;
+					if (slot.channel != null) {
+						channels.add(slot.channel);
+						slot.channel = null;
+					}
+				}
+			}
+			slots.clear();
+			activeChannels = Collections.emptyList();
+		}
+		for (Channel channel : channels) {
+			channel.close();
+		}
+	}
+
+	@Override
+	public void onEvent(ChannelEvent event) {
+		if (event.eventType != ChannelEvent.EventType.CLOSE) {
+			return;
+		}
+		Slot slot = event.channel.attr(SLOT_KEY).get();
+		if (slot == null || slot.pool() != this) {
+			return;
+		}
+		synchronized (slot) {
+			if (slot.closed || slot.channel != event.channel) {
+				return;
+			}
+			slot.channel = null;
+			if (SystemMillis.current() - slot.connectedTime >= stableConnectionTime) {
+				slot.reconnectAttempts = 0;
+			}
+		}
+		logger.warn("Channel closed, reconnect to {}", slot.remoteAddress);
+		refreshActiveChannels();
+		scheduleReconnect(slot);
+	}
+
+	/**
+	 * 异步建立连接，失败后按退避延迟重连
+	 *
+	 * @param slot 连接槽
+	 */
+	private void connect(final Slot slot) {
+		if (slot.closed || !netClient.isRunning()) {
+			return;
+		}
+		netClient.connect(slot.remoteAddress).addListener(new ChannelFutureListener() {
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				if (!future.isSuccess()) {
+					logger.warn("Connect to {} failed: {}", slot.remoteAddress, future.cause().getMessage());
+					scheduleReconnect(slot);
+					return;
+				}
+
+				Channel channel = future.channel();
+				channel.attr(SLOT_KEY).set(slot);
+				synchronized (slot) {
+					if (slot.closed) {
+						channel.close();
+						return;
+					}
+					slot.channel = channel;
+					slot.connectedTime = SystemMillis.current();
+				}
+				//连接在设置槽之前已关闭时不会收到关闭事件（事件中取不到槽），此处补充重连
+				if (!channel.isActive()) {
+					synchronized (slot) {
+						if (slot.channel != channel) {
+							return;
+						}
+						slot.channel = null;
+					}
+					scheduleReconnect(slot);
+					return;
+				}
+				refreshActiveChannels();
+			}
+		});
+	}
+
+	private void scheduleReconnect(final Slot slot) {
+		if (slot.closed || !netClient.isRunning()) {
+			return;
+		}
+		int attempts;
+		synchronized (slot) {
+			attempts = Math.min(slot.reconnectAttempts++, 30);
+		}
+		long delay = Math.min((long) reconnectDelay << attempts, maxReconnectDelay);
+		netClient.eventLoopGroup().schedule(new Runnable() {
+			@Override
+			public void run() {
+				connect(slot);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void refreshActiveChannels() {
+		synchronized (slots) {
+			List<Channel> channels = new ArrayList<>(slots.size());
+			for (Slot slot : slots) {
+				Channel channel = slot.channel;
+				if (channel != null && channel.isActive()) {
+					channels.add(channel);
+				}
+			}
+			activeChannels = Collections.unmodifiableList(channels);
+		}
+	}
+
+	/**
+	 * 选择发送请求的连接
+	 *
+	 * @param request 请求
+	 * @return 连接
+	 * @throws ServiceException.NotRunningException 连接池未运行
+	 * @throws NetworkException.NoAvailableChannelException 没有可用连接
+	 */
+	public Channel select(Request request) {
+		checkRunning();
+		List<Channel> channels = activeChannels;
+		if (channels.isEmpty()) {
+			throw new NetworkException.NoAvailableChannelException();
+		}
+		return channelSelector.select(netClient, request, channels);
+	}
+
+	/**
+	 * 单向发送请求
+	 *
+	 * @param request 请求（必须是无需ack类型）
+	 * @throws InterruptedException 发送过程中线程被中断
+	 * @throws NetworkException.NoAvailableChannelException 没有可用连接
+	 * @see NetService#sendOneWay(Request)
+	 */
+	public void sendOneWay(Request request) throws InterruptedException {
+		request.setChannel(select(request));
+		netClient.sendOneWay(request);
+	}
+
+	/**
+	 * 同步发送请求
+	 *
+	 * @param request 请求
+	 * @return 响应
+	 * @throws InterruptedException 发送过程中线程被中断
+	 * @throws NetworkException.NoAvailableChannelException 没有可用连接
+	 * @see NetService#sendSync(Request)
+	 */
+	public Response sendSync(Request request) throws InterruptedException {
+		request.setChannel(select(request));
+		return netClient.sendSync(request);
+	}
+
+	/**
+	 * 同步发送请求
+	 *
+	 * @param request 请求
+	 * @param requestTimeout 请求超时（ms）
+	 * @return 响应
+	 * @throws InterruptedException 发送过程中线程被中断
+	 * @throws NetworkException.NoAvailableChannelException 没有可用连接
+	 * @see NetService#sendSync(Request, int)
+	 */
+	public Response sendSync(Request request, int requestTimeout) throws InterruptedException {
+		request.setChannel(select(request));
+		return netClient.sendSync(request, requestTimeout);
+	}
+
+	/**
+	 * 异步发送请求
+	 *
+	 * @param request 请求
+	 * @return 响应Future
+	 * @throws NetworkException.NoAvailableChannelException 没有可用连接
+	 * @see NetService#sendAsync(Request)
+	 */
+	public ResponseFuture sendAsync(Request request) {
+		request.setChannel(select(request));
+		return netClient.sendAsync(request);
+	}
+
+	/**
+	 * 异步发送请求
+	 *
+	 * @param request 请求
+	 * @param requestTimeout 请求超时（ms）
+	 * @return 响应Future
+	 * @throws NetworkException.NoAvailableChannelException 没有可用连接
+	 * @see NetService#sendAsync(Request, int)
+	 */
+	public ResponseFuture sendAsync(Request request, int requestTimeout) {
+		request.setChannel(select(request));
+		return netClient.sendAsync(request, requestTimeout);
+	}
+
+	/**
+	 * 对冲发送请求（请求需幂等），使用客户端默认请求超时
+	 *
+	 * @param request 请求
+	 * @param promise 响应Promise
+	 * @return 传入的Promise
+	 * @throws NetworkException.NoAvailableChannelException 没有可用连接
+	 * @see #sendHedged(Request, int, Promise)
+	 */
+	public Future<Response> sendHedged(Request request, Promise<Response> promise) {
+		return sendHedged(request, netClient.getRequestTimeout(), promise);
+	}
+
+	/**
+	 * 对冲发送请求（请求需幂等）
+	 *
+	 * 请求在对冲延迟（{@link HedgingPolicy#getHedgeDelay(NetService, Request)}）内未结束时，
+	 * 在另一个连接上再发送一次相同的请求，先到达的响应完成Promise，另一个请求被取消（释放请求许可，之后到达的响应被丢弃），
+	 * 两个请求都失败时Promise以后失败的异常结束（对冲请求胜出时响应id为对冲请求的id）。
+	 * 不可对冲的请求或者只有一个可用连接时与普通异步发送相同
+	 *
+	 * 对冲请求受客户端请求许可和准入控制限制，获取不到许可时不再对冲
+	 *
+	 * @param request 请求
+	 * @param requestTimeout 请求超时（ms），对冲请求的超时为剩余时间
+	 * @param promise 响应Promise
+	 * @return 传入的Promise
+	 * @throws NetworkException.NoAvailableChannelException 没有可用连接
+	 * @see HedgingPolicy#isHedgeable(Request)
+	 */
+	public Future<Response> sendHedged(Request request, int requestTimeout, Promise<Response> promise) {
+		request.setChannel(select(request));
+		if (!hedgingPolicy.isHedgeable(request) || activeChannels.size() < 2) {
+			return netClient.sendAsync(request, requestTimeout, promise);
+		}
+
+		int hedgeDelay = hedgingPolicy.getHedgeDelay(netClient, request);
+		if (hedgeDelay >= requestTimeout) {
+			//对冲延迟不小于请求超时，不对冲
+			return netClient.sendAsync(request, requestTimeout, promise);
+		}
+		Hedging hedging = new Hedging(request, requestTimeout - hedgeDelay, promise);
+		hedging.primary = netClient.send(request, requestTimeout, hedging.primaryBridge, true);
+		request.getChannel().eventLoop().schedule(hedging, hedgeDelay, TimeUnit.MILLISECONDS);
+		return promise;
+	}
+
+	/**
+	 * @return 当前可用的连接
+	 */
+	public List<Channel> getActiveChannels() {
+		return activeChannels;
+	}
+
+	public List<SocketAddress> getRemoteAddresses() {
+		return Collections.unmodifiableList(remoteAddresses);
+	}
+
+	public int getChannelsPerAddress() {
+		return channelsPerAddress;
+	}
+
+	public void setChannelsPerAddress(int channelsPerAddress) {
+		this.channelsPerAddress = channelsPerAddress;
+	}
+
+	public ChannelSelector getChannelSelector() {
+		return channelSelector;
+	}
+
+	public void setChannelSelector(ChannelSelector channelSelector) {
+		this.channelSelector = Objects.requireNonNull(channelSelector);
+	}
+
+	public HedgingPolicy getHedgingPolicy() {
+		return hedgingPolicy;
+	}
+
+	public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+		this.hedgingPolicy = Objects.requireNonNull(hedgingPolicy);
+	}
+
+	public int getReconnectDelay() {
+		return reconnectDelay;
+	}
+
+	public void setReconnectDelay(int reconnectDelay) {
+		this.reconnectDelay = reconnectDelay;
+	}
+
+	public int getMaxReconnectDelay() {
+		return maxReconnectDelay;
+	}
+
+	public void setMaxReconnectDelay(int maxReconnectDelay) {
+		this.maxReconnectDelay = maxReconnectDelay;
+	}
+
+	public int getStableConnectionTime() {
+		return stableConnectionTime;
+	}
+
+	public void setStableConnectionTime(int stableConnectionTime) {
+		this.stableConnectionTime = stableConnectionTime;
+	}
+
+	/**
+	 * 一次对冲发送，作为对冲延迟到期任务发送对冲请求，同时监听原请求和对冲请求的结果
+	 */
+	private class Hedging implements Runnable, GenericFutureListener<Future<Response>> {
+
+		final Request request;
+		final int hedgeTimeout;
+		final Promise<Response> promise;
+
+		final Promise<Response> primaryBridge = ImmediateEventExecutor.INSTANCE.newPromise();
+		final Promise<Response> hedgeBridge = ImmediateEventExecutor.INSTANCE.newPromise();
+
+		/**
+		 * 未结束的请求数，对冲请求发送前加1，减到0时所有请求都已失败
+		 */
+		final AtomicInteger pending = new AtomicInteger(1);
+
+		volatile ResponsePromise primary;
+		volatile ResponsePromise hedge;
+
+		Hedging(Request request, int hedgeTimeout, Promise<Response> promise) {
+			this.request = request;
+			this.hedgeTimeout = hedgeTimeout;
+			this.promise = promise;
+			primaryBridge.addListener(this);
+			hedgeBridge.addListener(this);
+		}
+
+		@Override
+		public void run() {
+			if (promise.isDone()) {
+				return;
+			}
+			List<Channel> candidates = new ArrayList<>(activeChannels);
+			candidates.remove(request.getChannel());
+			if (candidates.isEmpty()) {
+				return;
+			}
+			HedgeRequest hedgeRequest = new HedgeRequest(request);
+			pending.incrementAndGet();
+			try {
+				hedgeRequest.setChannel(channelSelector.select(netClient, hedgeRequest, candidates));
+				hedge = netClient.send(hedgeRequest, hedgeTimeout, hedgeBridge, true);
+			} catch (Exception e) {
+				logger.debug("Hedge {} not sent: {}", request, e.toString());
+				if (pending.decrementAndGet() == 0) {
+					//原请求已失败
+					promise.tryFailure(primaryBridge.cause());
+				}
+				return;
+			}
+			if (promise.isDone()) {
+				//发送对冲请求期间原请求已成功
+				netClient.cancelRequest(hedge);
+			}
+		}
+
+		@Override
+		public void operationComplete(Future<Response> future) throws Exception {
+			if (future.isSuccess()) {
+				if (promise.trySuccess(future.getNow())) {
+					ResponsePromise loser = future == primaryBridge ? hedge : primary;
+					if (loser != null) {
+						netClient.cancelRequest(loser);
+					}
+				}
+			} else if (pending.decrementAndGet() == 0) {
+				promise.tryFailure(future.cause());
+			}
+		}
+	}
+
+	/**
+	 * 连接槽
+	 */
+	private class Slot {
+
+		final SocketAddress remoteAddress;
+
+		/**
+		 * 当前连接，为null表示正在连接或者等待重连（同步访问）
+		 */
+		volatile Channel channel;
+
+		/**
+		 * 连续重连次数，连接保持超过稳定时间后关闭时清零（同步访问）
+		 */
+		int reconnectAttempts;
+
+		/**
+		 * 当前连接建立的时间（同步访问）
+		 */
+		long connectedTime;
+
+		/**
+		 * 连接池是否已关闭
+		 */
+		volatile boolean closed;
+
+		Slot(SocketAddress remoteAddress) {
+			this.remoteAddress = remoteAddress;
+		}
+
+		ChannelPool pool() {
+			return ChannelPool.this;
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package pers.zyc.tools.network;
+
+import io.netty.channel.Channel;
+import io.netty.util.collection.IntObjectHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 连接上正在接收的流式请求
+ *
+ * 数据块在IO线程中按请求分发，在请求处理器的执行器中按顺序处理，
+ * 排队未处理的数据块总大小超过上限时暂停连接读取，降到上限一半以下时恢复，接收端内存占用与数据块大小相关而与请求大小无关
+ *
+ * @author zhangyancheng
+ */
+final class ChannelRequestStreams {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ChannelRequestStreams.class);
+
+	private final NetService netService;
+	private final Channel channel;
+
+	/**
+	 * 排队未处理的数据块总大小上限（byte）
+	 */
+	private final long maxPendingBytes;
+
+	/**
+	 * 排队未处理的数据块总大小（byte）
+	 */
+	private final AtomicLong pendingBytes = new AtomicLong();
+
+	/**
+	 * 请求id与分发器，只在IO线程中访问
+	 */
+	private final IntObjectHashMap<StreamDispatcher> dispatchers = new IntObjectHashMap<>();
+
+	ChannelRequestStreams(NetService netService, Channel channel, long maxPendingBytes) {
+		this.netService = netService;
+		this.channel = channel;
+		this.maxPendingBytes = maxPendingBytes;
+	}
+
+	/**
+	 * IO线程中分发数据块
+	 *
+	 * @param chunk 数据块
+	 */
+	void dispatch(StreamChunk chunk) {
+		StreamDispatcher dispatcher = dispatchers.get(chunk.getId());
+		if (dispatcher == null) {
+			RequestHandler requestHandler = netService.getRequestHandler(chunk.getType());
+			if (!(requestHandler instanceof StreamRequestHandler)) {
+				chunk.data.release();
+				throw new NetworkException("Unsupported stream request type: " + chunk.getType() +
+						", at " + netService.getName());
+			}
+			RequestStream stream = new RequestStream(chunk.getHeader());
+			stream.setChannel(channel);
+			Executor executor = requestHandler.getExecutor();
+			dispatcher = new StreamDispatcher(stream, (StreamRequestHandler) requestHandler,
+					executor == null ? BaseRequestHandler.SYNC_EXECUTOR : executor);
+			dispatchers.put(chunk.getId(), dispatcher);
+		}
+		if (chunk.isLast()) {
+			dispatchers.remove(chunk.getId());
+		}
+
+		if (pendingBytes.addAndGet(chunk.length) > maxPendingBytes && channel.config().isAutoRead()) {
+			channel.config().setAutoRead(false);
+			//暂停读取前处理线程可能已经释放了全部数据块（此时不会再恢复读取）
+			if (pendingBytes.get() <= maxPendingBytes >>> 1) {
+				channel.config().setAutoRead(true);
+			}
+		}
+		dispatcher.offer(chunk);
+	}
+
+	/**
+	 * IO线程中调用，连接关闭，丢弃所有未接收完整的请求
+	 */
+	void abortAll() {
+		for (StreamDispatcher dispatcher : dispatchers.values()) {
+			dispatcher.abort();
+		}
+		dispatchers.clear();
+	}
+
+	private void release(StreamChunk chunk) {
+		chunk.data.release();
+		if (pendingBytes.addAndGet(-chunk.length) <= maxPendingBytes >>> 1 && !channel.config().isAutoRead()) {
+			channel.config().setAutoRead(true);
+		}
+	}
+
+	/**
+	 * 单个流式请求的分发器，保证数据块在执行器中按顺序、非并发处理
+	 */
+	private class StreamDispatcher implements Runnable {
+
+		final RequestStream stream;
+		final StreamRequestHandler handler;
+		final Executor executor;
+
+		/**
+		 * 待处理的数据块（同步访问）
+		 */
+		final ArrayDeque<StreamChunk> chunks = new ArrayDeque<>();
+
+		/**
+		 * 是否已提交到执行器（同步访问）
+		 */
+		boolean scheduled;
+
+		/**
+		 * 是否已中止（同步访问）
+		 */
+		boolean aborted;
+
+		/**
+		 * 请求是否已处理结束（只在执行器中访问，执行器中的任务串行）
+		 */
+		boolean finished;
+
+		StreamDispatcher(RequestStream stream, StreamRequestHandler handler, Executor executor) {
+			this.stream = stream;
+			this.handler = handler;
+			this.executor = executor;
+		}
+
+		void offer(StreamChunk chunk) {
+			boolean schedule;
+			synchronized (this) {
+				chunks.add(chunk);
+				schedule = !scheduled;
+				scheduled = true;
+			}
+			if (schedule) {
+				executor.execute(this);
+			}
+		}
+
+		void abort() {
+			boolean schedule;
+			List<StreamChunk> dropped;
+			synchronized (this) {
+				aborted = true;
+				dropped = new ArrayList<>(chunks);
+				chunks.clear();
+				schedule = !scheduled;
+				scheduled = true;
+			}
+			for (StreamChunk chunk : dropped) {
+				release(chunk);
+			}
+			if (schedule) {
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			for (;;) {
+				StreamChunk chunk;
+				synchronized (this) {
+					chunk = chunks.poll();
+					if (chunk == null && !aborted) {
+						scheduled = false;
+						return;
+					}
+				}
+
+				if (chunk == null) {
+					//已中止并且没有待处理的数据块
+					if (!finished) {
+						finished = true;
+						try {
+							handler.onAbort(stream);
+						} catch (Exception e) {
+							LOGGER.error(stream + " abort error", e);
+						}
+					}
+					synchronized (this) {
+						scheduled = false;
+					}
+					return;
+				}
+
+				try {
+					process(chunk);
+				} finally {
+					release(chunk);
+				}
+			}
+		}
+
+		private void process(StreamChunk chunk) {
+			if (finished) {
+				//处理异常后丢弃剩余数据块
+				return;
+			}
+			Response response;
+			try {
+				handler.onChunk(stream, chunk.data);
+				if (!chunk.isLast()) {
+					return;
+				}
+				finished = true;
+				response = handler.handle(stream);
+			} catch (Exception e) {
+				finished = true;
+				response = netService.handleRequestException(e, stream);
+			}
+			netService.writeResponse(stream, response);
+		}
+	}
+}
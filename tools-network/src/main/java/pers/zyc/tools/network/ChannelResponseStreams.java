@@ -0,0 +1,37 @@
+package pers.zyc.tools.network;
+
+import io.netty.util.collection.IntObjectHashMap;
+
+/**
+ * 连接上的流式响应，包括消费端正在接收的流式响应和生产端正在发送的流式响应，以请求id为键
+ *
+ * 非线程安全，只在连接所属的IO线程中访问
+ *
+ * @author zhangyancheng
+ */
+final class ChannelResponseStreams {
+
+	/**
+	 * 消费端正在接收的流式响应
+	 */
+	final IntObjectHashMap<ResponseStream> streams = new IntObjectHashMap<>();
+
+	/**
+	 * 生产端正在发送的流式响应
+	 */
+	final IntObjectHashMap<ResponseSink> sinks = new IntObjectHashMap<>();
+
+	/**
+	 * 连接关闭，结束所有流式响应
+	 */
+	void closeAll() {
+		for (ResponseStream stream : streams.values()) {
+			stream.onEnd(new NetworkException("Channel closed!"));
+		}
+		streams.clear();
+		for (ResponseSink sink : sinks.values()) {
+			sink.cancel();
+		}
+		sinks.clear();
+	}
+}
@@ -0,0 +1,81 @@
+package pers.zyc.tools.network;
+
+import io.netty.channel.Channel;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接池发送请求时的连接选择策略
+ *
+ * @author zhangyancheng
+ */
+public interface ChannelSelector {
+
+	/**
+	 * 选择发送请求的连接
+	 *
+	 * @param netService 发送请求的服务
+	 * @param request 请求
+	 * @param channels 可用连接（不为空，不可修改）
+	 * @return 选择的连接
+	 */
+	Channel select(NetService netService, Request request, List<Channel> channels);
+
+	/**
+	 * 轮询
+	 */
+	class RoundRobin implements ChannelSelector {
+
+		private final AtomicInteger index = new AtomicInteger();
+
+		@Override
+		public Channel select(NetService netService, Request request, List<Channel> channels) {
+			return channels.get((index.getAndIncrement() & Integer.MAX_VALUE) % channels.size());
+		}
+	}
+
+	/**
+	 * 选择未完成请求最少的连接
+	 */
+	class LeastInFlight implements ChannelSelector {
+
+		@Override
+		public Channel select(NetService netService, Request request, List<Channel> channels) {
+			Channel selected = null;
+			int least = Integer.MAX_VALUE;
+			for (Channel channel : channels) {
+				int inFlight = netService.getInFlightRequests(channel);
+				if (inFlight < least) {
+					selected = channel;
+					least = inFlight;
+				}
+			}
+			return selected;
+		}
+	}
+
+	/**
+	 * 随机选择两个连接，取其中未完成请求较少的一个，
+	 * 负载接近最少未完成请求策略，但不需要遍历全部连接，也避免了所有请求同时涌向同一个最空闲的连接
+	 */
+	class PowerOfTwoChoices implements ChannelSelector {
+
+		@Override
+		public Channel select(NetService netService, Request request, List<Channel> channels) {
+			int size = channels.size();
+			if (size == 1) {
+				return channels.get(0);
+			}
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int first = random.nextInt(size);
+			int second = random.nextInt(size - 1);
+			if (second >= first) {
+				second++;
+			}
+			Channel a = channels.get(first), b = channels.get(second);
+			return netService.getInFlightRequests(a) <= netService.getInFlightRequests(b) ? a : b;
+		}
+	}
+}
@@ -23,12 +23,41 @@ public abstract class Command implements Protocol {
 	/**
 	 * 命令头部
 	 */
-	protected final Header header;
+	protected Header header;
 
 	Command(Header header) {
 		this.header = Objects.requireNonNull(header);
 	}
 
+	/**
+	 * 对象池中的命令使用，取出后通过{@link #setHeader(Header)}设置命令头
+	 */
+	Command() {
+	}
+
+	/**
+	 * 设置命令头，供对象池中复用的命令在取出时使用
+	 *
+	 * @param header 命令头
+	 */
+	protected final void setHeader(Header header) {
+		this.header = Objects.requireNonNull(header);
+	}
+
+	/**
+	 * 回收命令，开启了命令回收（{@link NetService#setRecycleCommands(boolean)}）时，
+	 * 解码出的请求在处理完成后调用，回收后不能再使用
+	 *
+	 * 默认归还对象池获取的命令头，对象池中的命令重写时需先调用父类方法再将自身归还到对象池
+	 */
+	public void recycle() {
+		Header header = this.header;
+		if (header != null) {
+			this.header = null;
+			header.recycle();
+		}
+	}
+
 	/**
 	 * 返回命令头部
 	 *
@@ -64,6 +93,16 @@ public abstract class Command implements Protocol {
 
 	@Override
 	public void encode(ByteBuf byteBuf) throws Exception {
+		encodeFrame(byteBuf);
+	}
+
+	/**
+	 * 编码长度、命令头和命令体
+	 *
+	 * @param byteBuf 出站数据
+	 * @return 长度与命令头实际写入的字节数
+	 */
+	final int encodeFrame(ByteBuf byteBuf) throws Exception {
 		validate();
 
 		int writerBegin = byteBuf.writerIndex();
@@ -71,6 +110,7 @@ public abstract class Command implements Protocol {
 		byteBuf.writerIndex(writerBegin + LENGTH_FIELD_LENGTH);
 
 		encodeHead(byteBuf);
+		int headLength = byteBuf.writerIndex() - writerBegin;
 		encodeBody(byteBuf);
 
 		int writerEnd = byteBuf.writerIndex();
@@ -78,6 +118,7 @@ public abstract class Command implements Protocol {
 		byteBuf.writerIndex(writerBegin);
 		byteBuf.writeMedium(writerEnd - writerBegin);
 		byteBuf.writerIndex(writerEnd);
+		return headLength;
 	}
 
 	/**
@@ -92,9 +133,33 @@ public abstract class Command implements Protocol {
 	 */
 	protected abstract void encodeBody(ByteBuf byteBuf) throws Exception;
 
+	/**
+	 * 零拷贝命令体，返回非null时编码器不再调用encodeBody，而是将长度、命令头与返回的内容组合后写出，
+	 * 适合已经存在于ByteBuf中的大块数据或者文件
+	 *
+	 * 每次编码只调用一次，返回内容的所有权（引用计数）转移给编码器，写出后释放
+	 *
+	 * @return ByteBuf或者FileRegion，默认返回null表示通过encodeBody编码
+	 */
+	protected Object bodyContent() {
+		return null;
+	}
+
+	/**
+	 * 命令体压缩算法，命令体编码后长度达到压缩阈值（{@link NetService#setCompressionThreshold(int)}）时压缩，
+	 * 零拷贝命令体（{@link #bodyContent()}）不压缩
+	 *
+	 * @return 压缩算法，默认返回null表示使用服务配置的算法（{@link NetService#setCompression(Compression)}）
+	 */
+	protected Compression compression() {
+		return null;
+	}
+
 	/**
 	 * 解码响应, Header已经解码, 因此子类重写并解码时已经是body部分
 	 *
+	 * 入参只在解码过程中有效，如需保留大块数据避免拷贝，使用byteBuf.retainedSlice()并在使用后释放
+	 *
 	 * @param byteBuf 入栈数据
 	 */
 	@Override
@@ -0,0 +1,205 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.compression.Snappy;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 命令体压缩算法，压缩后在命令头首字节的标记位中记录算法id
+ *
+ * @author zhangyancheng
+ */
+public enum Compression {
+
+	/**
+	 * 不压缩
+	 */
+	NONE(0) {
+		@Override
+		void compress(ByteBuf in, ByteBuf out) {
+			out.writeBytes(in);
+		}
+
+		@Override
+		void decompress(ByteBuf in, ByteBuf out) {
+			out.writeBytes(in);
+		}
+	},
+
+	/**
+	 * Snappy，压缩率一般，速度快
+	 *
+	 * Snappy编码器只支持不超过{@link #SNAPPY_BLOCK_LENGTH}字节的输入，命令体按此长度分块独立压缩，
+	 * 每块写为4字节压缩后长度与压缩数据
+	 */
+	SNAPPY(1) {
+		@Override
+		void compress(ByteBuf in, ByteBuf out) {
+			Snappy snappy = new Snappy();
+			while (in.isReadable()) {
+				//编码器只支持从0开始的读位置，每块作为独立的slice编码
+				ByteBuf block = in.readSlice(Math.min(in.readableBytes(), SNAPPY_BLOCK_LENGTH));
+				int lengthIndex = out.writerIndex();
+				out.writeInt(0);//空出压缩后长度
+				snappy.encode(block, out, block.readableBytes());
+				out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+				snappy.reset();
+			}
+		}
+
+		@Override
+		void decompress(ByteBuf in, ByteBuf out) {
+			Snappy snappy = new Snappy();
+			while (in.isReadable()) {
+				int compressedLength = in.readInt();
+				if (compressedLength <= 0 || compressedLength > in.readableBytes()) {
+					throw new DecoderException("Invalid snappy block length: " + compressedLength);
+				}
+				snappy.decode(in.readSlice(compressedLength), out);
+				snappy.reset();
+			}
+		}
+	},
+
+	/**
+	 * Deflate（zlib，最快压缩级别），压缩率高于Snappy，速度较慢
+	 */
+	DEFLATE(2) {
+		@Override
+		void compress(ByteBuf in, ByteBuf out) {
+			Deflater deflater = DEFLATER.get();
+			try {
+				byte[] input;
+				int inputOffset, inputLength = in.readableBytes();
+				if (in.hasArray()) {
+					input = in.array();
+					inputOffset = in.arrayOffset() + in.readerIndex();
+				} else {
+					input = new byte[inputLength];
+					inputOffset = 0;
+					in.getBytes(in.readerIndex(), input);
+				}
+				deflater.setInput(input, inputOffset, inputLength);
+				deflater.finish();
+				while (!deflater.finished()) {
+					out.ensureWritable(Math.max(64, inputLength >>> 3));
+					int written = deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(),
+							out.writableBytes());
+					out.writerIndex(out.writerIndex() + written);
+				}
+				in.skipBytes(inputLength);
+			} finally {
+				deflater.reset();
+			}
+		}
+
+		@Override
+		void decompress(ByteBuf in, ByteBuf out) throws DataFormatException {
+			Inflater inflater = INFLATER.get();
+			try {
+				byte[] input;
+				int inputOffset, inputLength = in.readableBytes();
+				if (in.hasArray()) {
+					input = in.array();
+					inputOffset = in.arrayOffset() + in.readerIndex();
+				} else {
+					input = new byte[inputLength];
+					inputOffset = 0;
+					in.getBytes(in.readerIndex(), input);
+				}
+				inflater.setInput(input, inputOffset, inputLength);
+				while (!inflater.finished() && out.isWritable()) {
+					int written = inflater.inflate(out.array(), out.arrayOffset() + out.writerIndex(),
+							out.writableBytes());
+					if (written == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						throw new DataFormatException("Truncated deflate data");
+					}
+					out.writerIndex(out.writerIndex() + written);
+				}
+				in.skipBytes(inputLength);
+			} finally {
+				inflater.reset();
+			}
+		}
+
+		@Override
+		ByteBuf allocate(ByteBufAllocator alloc, int capacity, int maxCapacity) {
+			//Deflater/Inflater只支持数组
+			return alloc.heapBuffer(capacity, maxCapacity);
+		}
+	};
+
+	private static final Compression[] VALUES = values();
+
+	/**
+	 * Snappy分块最大长度
+	 */
+	static final int SNAPPY_BLOCK_LENGTH = Short.MAX_VALUE;
+
+	private static final FastThreadLocal<Deflater> DEFLATER = new FastThreadLocal<Deflater>() {
+
+		@Override
+		protected Deflater initialValue() throws Exception {
+			return new Deflater(Deflater.BEST_SPEED);
+		}
+
+		@Override
+		protected void onRemoval(Deflater deflater) throws Exception {
+			deflater.end();
+		}
+	};
+
+	private static final FastThreadLocal<Inflater> INFLATER = new FastThreadLocal<Inflater>() {
+
+		@Override
+		protected Inflater initialValue() throws Exception {
+			return new Inflater();
+		}
+
+		@Override
+		protected void onRemoval(Inflater inflater) throws Exception {
+			inflater.end();
+		}
+	};
+
+	/**
+	 * 算法id，记录在命令头标记位中（2位）
+	 */
+	final int id;
+
+	Compression(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * 压缩，读取in中全部可读数据写入out
+	 */
+	abstract void compress(ByteBuf in, ByteBuf out) throws Exception;
+
+	/**
+	 * 解压，读取in中全部可读数据写入out（已按原始长度分配）
+	 */
+	abstract void decompress(ByteBuf in, ByteBuf out) throws Exception;
+
+	/**
+	 * 分配压缩、解压的输出缓冲
+	 */
+	ByteBuf allocate(ByteBufAllocator alloc, int capacity, int maxCapacity) {
+		return alloc.ioBuffer(capacity, maxCapacity);
+	}
+
+	static Compression valueOf(int id) {
+		for (Compression compression : VALUES) {
+			if (compression.id == id) {
+				return compression;
+			}
+		}
+		throw new IllegalArgumentException("Unknown compression: " + id);
+	}
+}
@@ -1,46 +1,65 @@
 package pers.zyc.tools.network;
 
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+
 import java.lang.reflect.Constructor;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Objects;
 
 /**
  * 默认命令工厂
  *
+ * 按命令类型注册命令创建者，解码时按int类型查找（无装箱），注册需在服务启动前完成
+ *
  * @author zhangyancheng
  */
 public class DefaultCommandFactory implements CommandFactory {
 
 	/**
-	 * 命令构造器Map
+	 * 命令创建者Map
 	 */
-	private final Map<Integer, Constructor<? extends Command>> commandConstructorMap = new HashMap<>();
+	private final IntObjectMap<CommandFactory> commandCreatorMap = new IntObjectHashMap<>();
 
 	@Override
 	public Command createByHeader(Header header) {
-		try {
-			Constructor<? extends Command> constructor = commandConstructorMap.get(header.getCommandType());
-			if (constructor != null) {
-				return constructor.newInstance(header);
-			}
-		} catch (Exception ignored) {
-		}
-		return null;
+		CommandFactory creator = commandCreatorMap.get(header.getCommandType());
+		return creator == null ? null : creator.createByHeader(header);
 	}
 
 	/**
-	 * 注册命令，命令类必须提供单独入参为Header对象的构造方法
+	 * 注册命令，命令类必须提供单独入参为Header对象的构造方法，解码时反射创建命令
 	 *
 	 * @param commandType 命令类型
 	 * @param commandClass 命令类
 	 */
 	public void register(int commandType, Class<? extends Command> commandClass) {
+		final Constructor<? extends Command> constructor;
 		try {
-			Constructor<? extends Command> constructor = commandClass.getConstructor(Header.class);
+			constructor = commandClass.getConstructor(Header.class);
 			constructor.newInstance(new Header());
-			commandConstructorMap.put(commandType, constructor);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
+		register(commandType, new CommandFactory() {
+
+			@Override
+			public Command createByHeader(Header header) {
+				try {
+					return constructor.newInstance(header);
+				} catch (Exception ignored) {
+					return null;
+				}
+			}
+		});
+	}
+
+	/**
+	 * 注册命令创建者，解码时直接调用创建者创建命令（无反射），可由创建者从对象池获取命令
+	 *
+	 * @param commandType 命令类型
+	 * @param commandCreator 命令创建者
+	 */
+	public void register(int commandType, CommandFactory commandCreator) {
+		commandCreatorMap.put(commandType, Objects.requireNonNull(commandCreator));
 	}
 }
@@ -0,0 +1,207 @@
+package pers.zyc.tools.network;
+
+import io.netty.util.collection.IntObjectHashMap;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 默认网络服务指标，计数器为原子变量，延迟按命令类型记录到{@link LatencyHistogram}
+ *
+ * 命令类型表写时复制，只在首次出现新命令类型时加锁，记录过程无锁
+ *
+ * @author zhangyancheng
+ */
+public class DefaultNetworkMetrics implements NetworkMetrics, NetworkMetricsMXBean {
+
+	private final AtomicLong inFlightRequests = new AtomicLong();
+	private final AtomicLong completedRequests = new AtomicLong();
+	private final AtomicLong timeoutRequests = new AtomicLong();
+	private final AtomicLong failedRequests = new AtomicLong();
+	private final AtomicLong sendFailures = new AtomicLong();
+	private final AtomicLong decodeFailures = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	/**
+	 * 命令类型与指标，写时复制
+	 */
+	private volatile IntObjectHashMap<TypeMetrics> typeMetricsMap = new IntObjectHashMap<>();
+
+	@Override
+	public void requestStarted(Request request) {
+		inFlightRequests.incrementAndGet();
+	}
+
+	@Override
+	public void requestCompleted(Request request, long rttNanos, Throwable cause) {
+		inFlightRequests.decrementAndGet();
+		completedRequests.incrementAndGet();
+		if (cause == null) {
+			//超时、取消、失败的请求时间不能反映往返时间，只计数不记录
+			typeMetrics(request.getType()).roundTrip.record(rttNanos);
+		} else if (cause instanceof NetworkException.TimeoutException) {
+			timeoutRequests.incrementAndGet();
+		} else if (!(cause instanceof NetworkException.RequestCancelledException)) {
+			failedRequests.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void sendFailed(Command command, Throwable cause) {
+		sendFailures.incrementAndGet();
+	}
+
+	@Override
+	public void decodeFailed(Throwable cause) {
+		decodeFailures.incrementAndGet();
+	}
+
+	@Override
+	public void bytesRead(long bytes) {
+		bytesRead.addAndGet(bytes);
+	}
+
+	@Override
+	public void bytesWritten(long bytes) {
+		bytesWritten.addAndGet(bytes);
+	}
+
+	@Override
+	public void requestHandled(Request request, long queueNanos, long handleNanos) {
+		TypeMetrics typeMetrics = typeMetrics(request.getType());
+		typeMetrics.queueWait.record(queueNanos);
+		typeMetrics.handle.record(handleNanos);
+	}
+
+	/**
+	 * 获取请求往返时间直方图，只包含成功的请求
+	 *
+	 * @param commandType 命令类型
+	 * @return 直方图（ns），无记录时为null
+	 */
+	public LatencyHistogram getRoundTripHistogram(int commandType) {
+		TypeMetrics typeMetrics = typeMetricsMap.get(commandType);
+		return typeMetrics == null ? null : typeMetrics.roundTrip;
+	}
+
+	/**
+	 * 获取请求处理时间直方图
+	 *
+	 * @param commandType 命令类型
+	 * @return 直方图（ns），无记录时为null
+	 */
+	public LatencyHistogram getHandleHistogram(int commandType) {
+		TypeMetrics typeMetrics = typeMetricsMap.get(commandType);
+		return typeMetrics == null ? null : typeMetrics.handle;
+	}
+
+	/**
+	 * 获取请求排队时间直方图
+	 *
+	 * @param commandType 命令类型
+	 * @return 直方图（ns），无记录时为null
+	 */
+	public LatencyHistogram getQueueWaitHistogram(int commandType) {
+		TypeMetrics typeMetrics = typeMetricsMap.get(commandType);
+		return typeMetrics == null ? null : typeMetrics.queueWait;
+	}
+
+	@Override
+	public long getInFlightRequests() {
+		return inFlightRequests.get();
+	}
+
+	@Override
+	public long getCompletedRequests() {
+		return completedRequests.get();
+	}
+
+	@Override
+	public long getTimeoutRequests() {
+		return timeoutRequests.get();
+	}
+
+	@Override
+	public long getFailedRequests() {
+		return failedRequests.get();
+	}
+
+	@Override
+	public long getSendFailures() {
+		return sendFailures.get();
+	}
+
+	@Override
+	public long getDecodeFailures() {
+		return decodeFailures.get();
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	@Override
+	public int[] getCommandTypes() {
+		IntObjectHashMap<TypeMetrics> map = typeMetricsMap;
+		int[] commandTypes = new int[map.size()];
+		int i = 0;
+		for (int commandType : map.keySet()) {
+			commandTypes[i++] = commandType;
+		}
+		Arrays.sort(commandTypes);
+		return commandTypes;
+	}
+
+	@Override
+	public long getRoundTripTime(int commandType, double percentile) {
+		return toMicros(getRoundTripHistogram(commandType), percentile);
+	}
+
+	@Override
+	public long getHandleTime(int commandType, double percentile) {
+		return toMicros(getHandleHistogram(commandType), percentile);
+	}
+
+	@Override
+	public long getQueueWaitTime(int commandType, double percentile) {
+		return toMicros(getQueueWaitHistogram(commandType), percentile);
+	}
+
+	private static long toMicros(LatencyHistogram histogram, double percentile) {
+		return histogram == null ? 0 : TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(percentile));
+	}
+
+	private TypeMetrics typeMetrics(int commandType) {
+		TypeMetrics typeMetrics = typeMetricsMap.get(commandType);
+		if (typeMetrics == null) {
+			synchronized (this) {
+				typeMetrics = typeMetricsMap.get(commandType);
+				if (typeMetrics == null) {
+					IntObjectHashMap<TypeMetrics> copy = new IntObjectHashMap<>(typeMetricsMap.size() + 1);
+					copy.putAll(typeMetricsMap);
+					typeMetrics = new TypeMetrics();
+					copy.put(commandType, typeMetrics);
+					typeMetricsMap = copy;
+				}
+			}
+		}
+		return typeMetrics;
+	}
+
+	/**
+	 * 单个命令类型的延迟
+	 */
+	private static class TypeMetrics {
+		final LatencyHistogram roundTrip = new LatencyHistogram();
+		final LatencyHistogram handle = new LatencyHistogram();
+		final LatencyHistogram queueWait = new LatencyHistogram();
+	}
+}
@@ -2,34 +2,79 @@ package pers.zyc.tools.network;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * 默认请求处理器工厂
  *
  * @author zhangyancheng
  */
-public class DefaultRequestHandlerFactory implements RequestHandlerFactory {
+public class DefaultRequestHandlerFactory implements RequestHandlerFactory, StreamResponseHandlerFactory {
 
 	/**
 	 * 请求处理器Map
 	 */
 	private final Map<Integer, RequestHandler> requestHandlerMap = new HashMap<>();
 
+	/**
+	 * 流式响应处理器Map
+	 */
+	private final Map<Integer, StreamResponseHandler> streamHandlerMap = new HashMap<>();
+
 	@Override
 	public RequestHandler getHandler(int requestType) {
 		return requestHandlerMap.get(requestType);
 	}
 
+	@Override
+	public StreamResponseHandler getStreamHandler(int requestType) {
+		return streamHandlerMap.get(requestType);
+	}
+
 	/**
 	 * 注册请求处理器
 	 *
 	 * @param requestType 请求类型
 	 * @param requestHandler 请求处理器
+	 * @throws IllegalArgumentException 批量请求处理器没有设置执行器
 	 */
 	public void register(int requestType, RequestHandler requestHandler) {
+		if (requestHandler instanceof BatchingRequestHandler &&
+				requestHandler.getExecutor() == BaseRequestHandler.SYNC_EXECUTOR) {
+			throw new IllegalArgumentException("Batching request handler can not collect in IO thread");
+		}
 		requestHandlerMap.put(requestType, requestHandler);
 	}
 
+	/**
+	 * 注册请求处理器并指定执行器
+	 *
+	 * @param requestType 请求类型
+	 * @param requestHandler 请求处理器
+	 * @param executor 请求处理执行器
+	 * @see RequestExecutors
+	 */
+	public void register(int requestType, BaseRequestHandler requestHandler, Executor executor) {
+		requestHandler.setExecutor(executor);
+		register(requestType, requestHandler);
+	}
+
+	/**
+	 * 注册流式响应处理器并指定执行器
+	 *
+	 * @param requestType 请求类型
+	 * @param streamHandler 流式响应处理器
+	 * @param executor 请求处理执行器，不能在IO线程中处理
+	 * @see RequestExecutors
+	 */
+	public void register(int requestType, StreamResponseHandler streamHandler, Executor executor) {
+		if (executor == BaseRequestHandler.SYNC_EXECUTOR) {
+			throw new IllegalArgumentException("Stream response handler can not handle in IO thread");
+		}
+		streamHandler.setExecutor(executor);
+		streamHandlerMap.put(requestType, streamHandler);
+	}
+
 	/**
 	 * 注册单一类型请求处理器
 	 *
@@ -0,0 +1,289 @@
+package pers.zyc.tools.network;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 默认请求准入控制，按连接和请求类型限制并发请求数
+ *
+ * 连接限制可开启自适应模式（参照Vegas/gradient并发限制算法）：以观测到的最小RTT作为无排队RTT，
+ * 当前RTT相对无排队RTT增大时按比例收缩限制，RTT平稳时以sqrt(limit)的排队余量增长，请求超时或者失败时按比例退让
+ *
+ * 所有限制参数需在服务启动前设置
+ *
+ * @author zhangyancheng
+ */
+public class DefaultRequestLimiter implements RequestLimiter {
+
+	/**
+	 * Channel保存连接限制键（每个连接只属于一个服务，由服务的准入控制使用）
+	 */
+	private static final AttributeKey<ChannelLimit> CHANNEL_LIMIT_KEY = AttributeKey.valueOf("CHANNEL_REQUEST_LIMIT");
+
+	/**
+	 * 请求类型限制
+	 */
+	private final IntObjectMap<Limit> typeLimitMap = new IntObjectHashMap<>();
+
+	/**
+	 * 每个连接的最大并发请求数（自适应模式下为初始值），小于等于0表示不限制
+	 */
+	private int channelLimit = 0;
+
+	/**
+	 * 是否开启连接限制自适应
+	 */
+	private boolean adaptive = false;
+
+	/**
+	 * 自适应模式下连接最小限制
+	 */
+	private int minChannelLimit = 4;
+
+	/**
+	 * 自适应模式下连接最大限制
+	 */
+	private int maxChannelLimit = 1000;
+
+	/**
+	 * RTT容忍倍数，当前RTT不超过无排队RTT的此倍数时不收缩限制
+	 */
+	private double rttTolerance = 2.0;
+
+	/**
+	 * 新限制的平滑系数（0, 1]，越大对RTT变化越敏感
+	 */
+	private double smoothing = 0.2;
+
+	/**
+	 * 请求超时或者失败时限制的退让比例
+	 */
+	private double backoffRatio = 0.9;
+
+	/**
+	 * 每多少个RTT样本重新探测一次无排队RTT（避免网络变化后一直使用过时的最小RTT）
+	 */
+	private int minRttProbeSamples = 1000;
+
+	@Override
+	public void acquire(Request request) {
+		Limit typeLimit = typeLimitMap.get(request.getType());
+		if (typeLimit != null && !typeLimit.tryAcquire()) {
+			throw new NetworkException.TypeRequestLimitException();
+		}
+
+		ChannelLimit channelLimit = channelLimitOf(request.getChannel());
+		if (channelLimit != null && !channelLimit.tryAcquire()) {
+			if (typeLimit != null) {
+				typeLimit.release();
+			}
+			throw new NetworkException.ChannelRequestLimitException();
+		}
+	}
+
+	@Override
+	public void release(Request request, long rttNanos, boolean dropped) {
+		Limit typeLimit = typeLimitMap.get(request.getType());
+		if (typeLimit != null) {
+			typeLimit.release();
+		}
+
+		ChannelLimit channelLimit = channelLimitOf(request.getChannel());
+		if (channelLimit != null) {
+			//单向请求的耗时只是写出时间，不作为RTT样本
+			if (adaptive && request.getHeader().isNeedAck()) {
+				channelLimit.update(rttNanos, dropped);
+			}
+			channelLimit.release();
+		}
+	}
+
+	/**
+	 * 返回连接当前限制
+	 *
+	 * @param channel 连接
+	 * @return 连接当前限制，小于等于0表示不限制
+	 */
+	public int getCurrentChannelLimit(Channel channel) {
+		ChannelLimit channelLimit = channelLimitOf(channel);
+		return channelLimit == null ? 0 : channelLimit.limit;
+	}
+
+	private ChannelLimit channelLimitOf(Channel channel) {
+		if (this.channelLimit <= 0) {
+			return null;
+		}
+		ChannelLimit channelLimit = channel.attr(CHANNEL_LIMIT_KEY).get();
+		if (channelLimit == null) {
+			ChannelLimit newLimit = new ChannelLimit(this.channelLimit);
+			channelLimit = channel.attr(CHANNEL_LIMIT_KEY).setIfAbsent(newLimit);
+			if (channelLimit == null) {
+				channelLimit = newLimit;
+			}
+		}
+		return channelLimit;
+	}
+
+	/**
+	 * 设置请求类型最大并发请求数
+	 *
+	 * @param requestType 请求类型
+	 * @param limit 最大并发请求数
+	 */
+	public void setTypeLimit(int requestType, int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("limit " + limit + " <= 0");
+		}
+		typeLimitMap.put(requestType, new Limit(limit));
+	}
+
+	public int getChannelLimit() {
+		return channelLimit;
+	}
+
+	public void setChannelLimit(int channelLimit) {
+		this.channelLimit = channelLimit;
+	}
+
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	public void setAdaptive(boolean adaptive) {
+		this.adaptive = adaptive;
+	}
+
+	public int getMinChannelLimit() {
+		return minChannelLimit;
+	}
+
+	public void setMinChannelLimit(int minChannelLimit) {
+		this.minChannelLimit = minChannelLimit;
+	}
+
+	public int getMaxChannelLimit() {
+		return maxChannelLimit;
+	}
+
+	public void setMaxChannelLimit(int maxChannelLimit) {
+		this.maxChannelLimit = maxChannelLimit;
+	}
+
+	public double getRttTolerance() {
+		return rttTolerance;
+	}
+
+	public void setRttTolerance(double rttTolerance) {
+		this.rttTolerance = rttTolerance;
+	}
+
+	public double getSmoothing() {
+		return smoothing;
+	}
+
+	public void setSmoothing(double smoothing) {
+		this.smoothing = smoothing;
+	}
+
+	public double getBackoffRatio() {
+		return backoffRatio;
+	}
+
+	public void setBackoffRatio(double backoffRatio) {
+		this.backoffRatio = backoffRatio;
+	}
+
+	public int getMinRttProbeSamples() {
+		return minRttProbeSamples;
+	}
+
+	public void setMinRttProbeSamples(int minRttProbeSamples) {
+		this.minRttProbeSamples = minRttProbeSamples;
+	}
+
+	/**
+	 * 并发计数限制
+	 */
+	private static class Limit {
+
+		final AtomicInteger inFlight = new AtomicInteger();
+		volatile int limit;
+
+		Limit(int limit) {
+			this.limit = limit;
+		}
+
+		boolean tryAcquire() {
+			for (;;) {
+				int current = inFlight.get();
+				if (current >= limit) {
+					return false;
+				}
+				if (inFlight.compareAndSet(current, current + 1)) {
+					return true;
+				}
+			}
+		}
+
+		void release() {
+			inFlight.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 连接限制，自适应模式下根据RTT调整限制
+	 */
+	private class ChannelLimit extends Limit {
+
+		/**
+		 * 平滑后的限制（同步访问）
+		 */
+		double estimatedLimit;
+
+		/**
+		 * 无排队RTT（同步访问），为0表示还未采样
+		 */
+		long minRtt;
+
+		/**
+		 * 本轮探测的样本数（同步访问）
+		 */
+		int samples;
+
+		ChannelLimit(int limit) {
+			super(limit);
+			this.estimatedLimit = limit;
+		}
+
+		synchronized void update(long rtt, boolean dropped) {
+			double newLimit;
+			if (dropped) {
+				newLimit = estimatedLimit * backoffRatio;
+			} else {
+				if (++samples >= minRttProbeSamples) {
+					samples = 0;
+					minRtt = 0;
+				}
+				if (rtt <= 0) {
+					return;
+				}
+				if (minRtt == 0 || rtt < minRtt) {
+					minRtt = rtt;
+				}
+				//并发请求不足一半时RTT不能反映排队情况，不调整限制
+				if (inFlight.get() < estimatedLimit / 2) {
+					return;
+				}
+				double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * minRtt / rtt));
+				newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+			}
+			newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+			estimatedLimit = Math.max(minChannelLimit, Math.min(maxChannelLimit, newLimit));
+			limit = (int) estimatedLimit;
+		}
+	}
+}
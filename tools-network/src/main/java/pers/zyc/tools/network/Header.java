@@ -1,19 +1,92 @@
 package pers.zyc.tools.network;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.DecoderException;
+import io.netty.util.Recycler;
+import pers.zyc.tools.utils.SystemMillis;
 
 /**
  * @author zhangyancheng
  */
 public class Header implements Protocol {
 
-	private static final int REQUEST_HEADER_LENGTH = 1 + 1 + 1 + 4 + 4 + 8;
+	static final int REQUEST_HEADER_LENGTH = 1 + 1 + 1 + 4 + 4 + 8;
+
+	/**
+	 * 首字节低4位为命令头类型，高4位为标记位
+	 */
+	static final int TYPE_MASK = 0x0F;
+
+	/**
+	 * 压缩算法标记位（第4、5位），值为{@link Compression#id}，为0表示未压缩
+	 */
+	static final int COMPRESSION_SHIFT = 4;
+	static final int COMPRESSION_MASK = 0x30;
+
+	/**
+	 * 流式标记位（第6位），请求中标记流式请求的数据块（同一请求的所有数据块命令头相同），
+	 * 响应中标记流式响应的元素（同一请求的所有响应id相同）
+	 */
+	static final int STREAM_CHUNK = 0x40;
+
+	/**
+	 * 流式请求最后一个数据块、流式响应结束帧标记位（第7位）
+	 */
+	static final int STREAM_LAST = 0x80;
+
+	/**
+	 * 第二字节最低位为是否需要ack
+	 */
+	static final int NEED_ACK = 0x01;
+
+	/**
+	 * 截止时间标记位（第二字节第1位），命令头版本不低于{@link #DEADLINE_VERSION}时有效，
+	 * 设置时命令头后跟随4字节剩余时间（ms）
+	 */
+	static final int DEADLINE_FLAG = 0x02;
+
+	/**
+	 * 命令头版本（第二字节高4位），旧版本只写出是否需要ack（0或者1），版本为0，
+	 * 没有扩展字段的命令头仍按版本0编码，与旧版本兼容
+	 */
+	static final int VERSION_SHIFT = 4;
+
+	/**
+	 * 支持截止时间的命令头版本，也是当前最高版本
+	 */
+	static final int DEADLINE_VERSION = 1;
+
+	/**
+	 * 剩余时间长度
+	 */
+	static final int DEADLINE_LENGTH = 4;
 
 	static final int REQUEST = 0;
 	static final int RESPONSE = 1;
 
 	/**
-	 * 命令头类型，标识命令是请求（0）还是响应（1）
+	 * 流式响应的许可（消费端请求更多响应），命令id为流式响应的请求id
+	 */
+	static final int CREDIT = 2;
+
+	/**
+	 * 命令头对象池，用于解码时减少对象分配
+	 */
+	private static final Recycler<Header> RECYCLER = new Recycler<Header>() {
+
+		@Override
+		protected Header newObject(Handle<Header> handle) {
+			return new Header(handle);
+		}
+	};
+
+	/**
+	 * 对象池句柄，非对象池创建时为null
+	 */
+	private final Recycler.Handle<Header> recyclerHandle;
+
+	/**
+	 * 命令头类型，标识命令是请求（0）、响应（1）还是流式响应许可（2）
 	 */
 	private int headerType;
 
@@ -42,6 +115,65 @@ public class Header implements Protocol {
 	 */
 	private long commandTime;
 
+	/**
+	 * 截止时间（本地时间ms），为0表示无截止时间
+	 *
+	 * 编码时写为剩余时间，解码时按本地时间还原，因此不受两端时钟差异影响（不包含网络传输时间）
+	 */
+	private long deadline;
+
+	/**
+	 * 是否可对冲发送（幂等请求），只在发送端使用，不编码
+	 *
+	 * @see ChannelPool#sendHedged(Request, io.netty.util.concurrent.Promise)
+	 */
+	private boolean hedgeable;
+
+	/**
+	 * 标记位（首字节高4位），由编码器写入，解码时读出
+	 */
+	private int flags;
+
+	public Header() {
+		this.recyclerHandle = null;
+	}
+
+	private Header(Recycler.Handle<Header> recyclerHandle) {
+		this.recyclerHandle = recyclerHandle;
+	}
+
+	/**
+	 * 从对象池获取命令头，使用完后需调用{@link #recycle()}归还（未归还则由GC回收）
+	 *
+	 * @return 命令头
+	 */
+	public static Header newInstance() {
+		return RECYCLER.get();
+	}
+
+	/**
+	 * 对象池获取的命令头归还到对象池，归还后不能再使用，非对象池创建的命令头调用无影响
+	 */
+	public void recycle() {
+		if (recyclerHandle != null) {
+			headerType = 0;
+			needAck = false;
+			commandId = 0;
+			commandType = 0;
+			commandVersion = 0;
+			commandTime = 0;
+			deadline = 0;
+			hedgeable = false;
+			flags = 0;
+			recyclerHandle.recycle(this);
+		}
+	}
+
+	Header flags(int flags) {
+		this.flags = flags;
+		return this;
+	}
+
 	public Header headerType(int headerType) {
 		setHeaderType(headerType);
 		return this;
@@ -72,6 +204,16 @@ public class Header implements Protocol {
 		return this;
 	}
 
+	public Header deadline(long deadline) {
+		setDeadline(deadline);
+		return this;
+	}
+
+	public Header hedgeable(boolean hedgeable) {
+		setHedgeable(hedgeable);
+		return this;
+	}
+
 	public boolean isRequest() {
 		return headerType == REQUEST;
 	}
@@ -83,12 +225,12 @@ public class Header implements Protocol {
 
 	@Override
 	public int getEstimatedSize() {
-		return REQUEST_HEADER_LENGTH;
+		return deadline > 0 ? REQUEST_HEADER_LENGTH + DEADLINE_LENGTH : REQUEST_HEADER_LENGTH;
 	}
 
 	@Override
 	public void validate() throws Exception {
-		if (headerType != REQUEST && headerType != RESPONSE) {
+		if (headerType != REQUEST && headerType != RESPONSE && headerType != CREDIT) {
 			throw new IllegalArgumentException("Unknown header type: " + headerType);
 		}
 	}
@@ -97,26 +239,69 @@ public class Header implements Protocol {
 	public void encode(ByteBuf byteBuf) throws Exception {
 		validate();
 
-		byteBuf.writeByte(headerType);
-		byteBuf.writeBoolean(needAck);
+		byteBuf.writeByte(headerType | flags);
+		byteBuf.writeByte(deadline > 0 ? (DEADLINE_VERSION << VERSION_SHIFT) | DEADLINE_FLAG | (needAck ? NEED_ACK : 0) :
+				(needAck ? NEED_ACK : 0));
 		byteBuf.writeByte(commandVersion);
 		byteBuf.writeInt(commandId);
 		byteBuf.writeInt(commandType);
 		byteBuf.writeLong(commandTime);
+		if (deadline > 0) {
+			//已过截止时间的也写出最小剩余时间，由接收方丢弃
+			byteBuf.writeInt((int) Math.max(1, Math.min(Integer.MAX_VALUE, deadline - SystemMillis.current())));
+		}
 	}
 
 	@Override
 	public void decode(ByteBuf byteBuf) throws Exception {
-		this.headerType(byteBuf.readByte())
-			.needAck(byteBuf.readBoolean())
+		int first = byteBuf.readByte() & 0xFF;
+		this.flags = first & ~TYPE_MASK;
+		int second = byteBuf.readByte() & 0xFF;
+		int version = second >>> VERSION_SHIFT;
+		if (version > DEADLINE_VERSION) {
+			throw new DecoderException("Unsupported header version: " + version);
+		}
+		this.headerType(first & TYPE_MASK)
+			.needAck((second & NEED_ACK) != 0)
 			.commandVersion(byteBuf.readByte())
 			.commandId(byteBuf.readInt())
 			.commandType(byteBuf.readInt())
 			.commandTime(byteBuf.readLong());
+		if (version >= DEADLINE_VERSION && (second & DEADLINE_FLAG) != 0) {
+			this.deadline(SystemMillis.current() + byteBuf.readInt());
+		}
 
 		validate();
 	}
 
+	/**
+	 * @return 是否已过截止时间（无截止时间时为false）
+	 */
+	public boolean isExpired() {
+		return deadline > 0 && SystemMillis.current() >= deadline;
+	}
+
+	/**
+	 * @return 命令体压缩算法（解码时有效）
+	 */
+	public Compression getCompression() {
+		return Compression.valueOf((flags & COMPRESSION_MASK) >>> COMPRESSION_SHIFT);
+	}
+
+	/**
+	 * @return 是否为流式请求的数据块（或者流式响应）
+	 */
+	boolean isStreamChunk() {
+		return (flags & STREAM_CHUNK) != 0;
+	}
+
+	/**
+	 * @return 是否为流式请求的最后一个数据块（或者流式响应结束帧）
+	 */
+	boolean isLastChunk() {
+		return (flags & STREAM_LAST) != 0;
+	}
+
 	public int getHeaderType() {
 		return headerType;
 	}
@@ -164,4 +349,20 @@ public class Header implements Protocol {
 	public void setCommandTime(long commandTime) {
 		this.commandTime = commandTime;
 	}
+
+	public long getDeadline() {
+		return deadline;
+	}
+
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	public boolean isHedgeable() {
+		return hedgeable;
+	}
+
+	public void setHedgeable(boolean hedgeable) {
+		this.hedgeable = hedgeable;
+	}
 }
@@ -0,0 +1,56 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 对冲请求，与原请求命令类型、版本、命令时间和命令体相同，命令id不同，用于在另一个连接上重复发送原请求
+ *
+ * 命令体通过原请求的{@link Command#encodeBody(ByteBuf)}编码（原请求编码过程需无副作用），
+ * 零拷贝命令体的请求不对冲（{@link HedgingPolicy#isHedgeable(Request)}）
+ *
+ * @author zhangyancheng
+ */
+final class HedgeRequest extends Request {
+
+	/**
+	 * 原请求
+	 */
+	final Request origin;
+
+	HedgeRequest(Request origin) {
+		super(origin.getType(), true, origin.getHeader().getCommandTime());
+		header.commandVersion(origin.getHeader().getCommandVersion()).hedgeable(true);
+		this.origin = origin;
+	}
+
+	@Override
+	public int getEstimatedSize() {
+		return origin.getEstimatedSize();
+	}
+
+	@Override
+	public void validate() throws Exception {
+		origin.validate();
+	}
+
+	@Override
+	protected void encodeBody(ByteBuf byteBuf) throws Exception {
+		origin.encodeBody(byteBuf);
+	}
+
+	@Override
+	protected Compression compression() {
+		return origin.compression();
+	}
+
+	@Override
+	protected void decodeBody(ByteBuf byteBuf) throws Exception {
+		//命令体与原请求相同
+		origin.decodeBody(byteBuf);
+	}
+
+	@Override
+	public String toString() {
+		return "HedgeRequest{id=" + getId() + ", origin=" + origin + "}";
+	}
+}
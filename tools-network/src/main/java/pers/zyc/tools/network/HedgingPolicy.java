@@ -0,0 +1,151 @@
+package pers.zyc.tools.network;
+
+import io.netty.util.collection.IntObjectHashMap;
+
+/**
+ * 对冲策略，决定哪些请求可以对冲以及对冲延迟
+ *
+ * 对冲延迟取命令类型请求往返时间的百分位（默认p95，需使用{@link DefaultNetworkMetrics}），
+ * 往返时间只包含成功的请求，超时、失败以及对冲中被取消的请求不计入，
+ * 样本不足时使用默认延迟，结果限制在[minDelay, maxDelay]之间
+ *
+ * @author zhangyancheng
+ * @see ChannelPool#sendHedged(Request, io.netty.util.concurrent.Promise)
+ */
+public class HedgingPolicy {
+
+	/**
+	 * 命令类是否覆盖了{@link Command#bodyContent()}（零拷贝命令体）
+	 */
+	private static final ClassValue<Boolean> ZERO_COPY_COMMANDS = new ClassValue<Boolean>() {
+
+		@Override
+		protected Boolean computeValue(Class<?> commandClass) {
+			for (Class<?> c = commandClass; c != Command.class; c = c.getSuperclass()) {
+				try {
+					c.getDeclaredMethod("bodyContent");
+					return true;
+				} catch (NoSuchMethodException ignored) {
+				}
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * 可对冲的命令类型（写时复制）
+	 */
+	private volatile IntObjectHashMap<Boolean> hedgeableTypes = new IntObjectHashMap<>();
+
+	/**
+	 * 对冲延迟取往返时间的百分位（0~100）
+	 */
+	private double delayPercentile = 95;
+
+	/**
+	 * 计算百分位所需的最少样本数，不足时使用默认延迟
+	 */
+	private long minSamples = 100;
+
+	/**
+	 * 默认对冲延迟（ms）
+	 */
+	private int defaultDelay = 50;
+
+	/**
+	 * 最小对冲延迟（ms）
+	 */
+	private int minDelay = 1;
+
+	/**
+	 * 最大对冲延迟（ms）
+	 */
+	private int maxDelay = 1000;
+
+	/**
+	 * 添加可对冲的命令类型（幂等请求）
+	 *
+	 * @param commandType 命令类型
+	 */
+	public synchronized void addHedgeableType(int commandType) {
+		IntObjectHashMap<Boolean> copy = new IntObjectHashMap<>(hedgeableTypes.size() + 1);
+		copy.putAll(hedgeableTypes);
+		copy.put(commandType, Boolean.TRUE);
+		hedgeableTypes = copy;
+	}
+
+	/**
+	 * 请求是否可以对冲，命令头标记了可对冲或者命令类型可对冲，并且需要应答
+	 *
+	 * 零拷贝命令体（覆盖了{@link Command#bodyContent()}）的所有权在原请求编码时转移给编码器，
+	 * 对冲请求无法再次编码，这类请求不对冲
+	 *
+	 * @param request 请求
+	 * @return 是否可以对冲
+	 */
+	public boolean isHedgeable(Request request) {
+		Header header = request.getHeader();
+		return header.isNeedAck() && !(request instanceof StreamRequest) &&
+				(header.isHedgeable() || hedgeableTypes.containsKey(request.getType())) &&
+				!ZERO_COPY_COMMANDS.get(request.getClass());
+	}
+
+	/**
+	 * 计算对冲延迟
+	 *
+	 * @param netService 发送请求的服务
+	 * @param request 请求
+	 * @return 对冲延迟（ms）
+	 */
+	public int getHedgeDelay(NetService netService, Request request) {
+		long delay = defaultDelay;
+		NetworkMetrics networkMetrics = netService.getNetworkMetrics();
+		if (networkMetrics instanceof DefaultNetworkMetrics) {
+			LatencyHistogram histogram = ((DefaultNetworkMetrics) networkMetrics).getRoundTripHistogram(request.getType());
+			if (histogram != null && histogram.getCount() >= minSamples) {
+				delay = histogram.getValueAtPercentile(delayPercentile) / 1000000;
+			}
+		}
+		return (int) Math.max(minDelay, Math.min(maxDelay, delay));
+	}
+
+	public double getDelayPercentile() {
+		return delayPercentile;
+	}
+
+	public void setDelayPercentile(double delayPercentile) {
+		this.delayPercentile = delayPercentile;
+	}
+
+	public long getMinSamples() {
+		return minSamples;
+	}
+
+	public void setMinSamples(long minSamples) {
+		this.minSamples = minSamples;
+	}
+
+	public int getDefaultDelay() {
+		return defaultDelay;
+	}
+
+	public void setDefaultDelay(int defaultDelay) {
+		this.defaultDelay = defaultDelay;
+	}
+
+	public int getMinDelay() {
+		return minDelay;
+	}
+
+	public void setMinDelay(int minDelay) {
+		this.minDelay = minDelay;
+	}
+
+	public int getMaxDelay() {
+		return maxDelay;
+	}
+
+	public void setMaxDelay(int maxDelay) {
+		this.maxDelay = maxDelay;
+	}
+}
@@ -0,0 +1,115 @@
+package pers.zyc.tools.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟直方图（HdrHistogram风格的对数线性分桶）
+ *
+ * 每个2的幂区间均分为16个桶，相对误差不超过1/16，覆盖全部long范围，总共960个桶，
+ * 记录只做原子自增，不加锁不分配对象，读取时扫描所有桶（读取与记录并发时结果为近似值）
+ *
+ * @author zhangyancheng
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * 每个2的幂区间的子桶数（位数）
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong totalCount = new AtomicLong();
+	private final AtomicLong totalValue = new AtomicLong();
+	private final AtomicLong maxValue = new AtomicLong();
+
+	/**
+	 * 记录一个值
+	 *
+	 * @param value 值（小于0时记为0）
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(indexOf(value));
+		totalCount.incrementAndGet();
+		totalValue.addAndGet(value);
+
+		long max;
+		while (value > (max = maxValue.get()) && !maxValue.compareAndSet(max, value)) {
+		}
+	}
+
+	/**
+	 * @return 记录总数
+	 */
+	public long getCount() {
+		return totalCount.get();
+	}
+
+	/**
+	 * @return 最大值
+	 */
+	public long getMax() {
+		return maxValue.get();
+	}
+
+	/**
+	 * @return 平均值
+	 */
+	public double getMean() {
+		long count = totalCount.get();
+		return count == 0 ? 0 : (double) totalValue.get() / count;
+	}
+
+	/**
+	 * 获取百分位值
+	 *
+	 * @param percentile 百分位（0~100）
+	 * @return 不小于此百分位记录值的桶上界（不超过最大值），无记录时为0
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = totalCount.get();
+		if (count == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+		long max = maxValue.get();
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts.get(i);
+			if (seen >= target) {
+				return Math.min(upperBoundOf(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * 值所在的桶
+	 */
+	static int indexOf(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & SUB_BUCKET_MASK);
+	}
+
+	/**
+	 * 桶内的最大值
+	 */
+	static long upperBoundOf(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		long lowerBound = (long) (SUB_BUCKET_COUNT + (index & SUB_BUCKET_MASK)) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+}
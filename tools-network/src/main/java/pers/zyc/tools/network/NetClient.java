@@ -4,6 +4,10 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import pers.zyc.tools.utils.GeneralThreadFactory;
@@ -11,6 +15,8 @@ import pers.zyc.tools.utils.lifecycle.ServiceException;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * @author zhangyancheng
@@ -50,9 +56,22 @@ public class NetClient extends NetService {
 				.option(ChannelOption.SO_SNDBUF, getSoSendBuffer())
 				.option(ChannelOption.SO_RCVBUF, getSoReceiveBuffer())
 				.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, getConnectTimeout())
-				.group(new NioEventLoopGroup(getSelectors(), new GeneralThreadFactory("IO-SELECTOR-")))
-				.channel(NioSocketChannel.class)
+				.option(ChannelOption.ALLOCATOR, getAllocator())
+				.option(ChannelOption.WRITE_BUFFER_WATER_MARK, getWriteBufferWaterMark())
 				.handler(new PipelineAssembler());
+
+		ThreadFactory selectorThreadFactory = new GeneralThreadFactory("IO-SELECTOR-");
+		if (isEPollAvailable()) {
+			bootstrap
+					.option(EpollChannelOption.EPOLL_MODE, getEPollMode())
+					.option(EpollChannelOption.TCP_QUICKACK, isTcpQuickAck())
+					.group(new EpollEventLoopGroup(getSelectors(), selectorThreadFactory))
+					.channel(EpollSocketChannel.class);
+		} else {
+			bootstrap
+					.group(new NioEventLoopGroup(getSelectors(), selectorThreadFactory))
+					.channel(NioSocketChannel.class);
+		}
 	}
 
 	@Override
@@ -93,6 +112,43 @@ public class NetClient extends NetService {
 		this.soSendBuffer = soSendBuffer;
 	}
 
+	/**
+	 * 异步创建连接
+	 *
+	 * @param remoteAddress 对端socket地址
+	 * @return 连接Future
+	 * @throws ServiceException.NotRunningException 服务未运行
+	 */
+	public ChannelFuture connect(SocketAddress remoteAddress) {
+		checkRunning();
+		return bootstrap.connect(remoteAddress);
+	}
+
+	/**
+	 * 创建连接池
+	 *
+	 * @param remoteAddresses 远端地址
+	 * @param channelsPerAddress 每个远端地址的连接数
+	 * @param channelSelector 连接选择策略
+	 * @return 已启动的连接池（连接异步建立）
+	 * @throws ServiceException.NotRunningException 服务未运行
+	 */
+	public ChannelPool createChannelPool(Collection<? extends SocketAddress> remoteAddresses, int channelsPerAddress,
+										 ChannelSelector channelSelector) {
+		ChannelPool channelPool = new ChannelPool(this, remoteAddresses);
+		channelPool.setChannelsPerAddress(channelsPerAddress);
+		channelPool.setChannelSelector(channelSelector);
+		channelPool.start();
+		return channelPool;
+	}
+
+	/**
+	 * @return IO线程组，连接池用于调度重连
+	 */
+	EventLoopGroup eventLoopGroup() {
+		return bootstrap.config().group();
+	}
+
 	/**
 	 * 创建连接
 	 *
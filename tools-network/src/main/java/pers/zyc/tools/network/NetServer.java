@@ -3,7 +3,7 @@ package pers.zyc.tools.network;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -18,11 +18,6 @@ import java.util.concurrent.ThreadFactory;
  */
 public class NetServer extends NetService {
 
-	/**
-	 * 是否使用epoll
-	 */
-	private boolean useEPoll;
-
 	/**
 	 * 等待接受连接队列大小
 	 */
@@ -53,17 +48,24 @@ public class NetServer extends NetService {
 				.option(ChannelOption.SO_BACKLOG, getBacklog())
 				.option(ChannelOption.SO_REUSEADDR, isSoReuseAddress())
 				.option(ChannelOption.SO_RCVBUF, getSoReceiveBuffer())
-				.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, getConnectTimeout());
+				.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, getConnectTimeout())
+				.option(ChannelOption.ALLOCATOR, getAllocator())
+				.childOption(ChannelOption.ALLOCATOR, getAllocator())
+				.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, getWriteBufferWaterMark());
 
 		ThreadFactory acceptorThreadFactory = new GeneralThreadFactory("IO-ACCEPTOR"),
 					  selectorThreadFactory = new GeneralThreadFactory("IO-SELECTOR-");
 
 		EventLoopGroup acceptorLoopGroup, selectorLoopGroup;
 		Class<? extends ServerSocketChannel> channelClass;
-		if (useEPoll && Epoll.isAvailable()) {
+		if (isEPollAvailable()) {
 			acceptorLoopGroup = new EpollEventLoopGroup(1, acceptorThreadFactory);
 			selectorLoopGroup = new EpollEventLoopGroup(getSelectors(), selectorThreadFactory);
 			channelClass = EpollServerSocketChannel.class;
+			bootstrap
+					.option(EpollChannelOption.EPOLL_MODE, getEPollMode())
+					.childOption(EpollChannelOption.EPOLL_MODE, getEPollMode())
+					.childOption(EpollChannelOption.TCP_QUICKACK, isTcpQuickAck());
 		} else {
 			acceptorLoopGroup = new NioEventLoopGroup(1, acceptorThreadFactory);
 			selectorLoopGroup = new NioEventLoopGroup(getSelectors(), selectorThreadFactory);
@@ -87,14 +89,6 @@ public class NetServer extends NetService {
 		logger.info("{}[:{}] stopped", getName(), getPort());
 	}
 
-	public boolean isUseEPoll() {
-		return useEPoll;
-	}
-
-	public void setUseEPoll(boolean useEPoll) {
-		this.useEPoll = useEPoll;
-	}
-
 	public int getBacklog() {
 		return backlog;
 	}
@@ -1,37 +1,88 @@
 package pers.zyc.tools.network;
 
-import io.netty.buffer.ByteBuf;
+import io.netty.buffer.*;
 import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.AttributeKey;
-import io.netty.util.internal.ConcurrentSet;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pers.zyc.tools.utils.GeneralThreadFactory;
 import pers.zyc.tools.utils.SystemMillis;
 import pers.zyc.tools.utils.event.*;
+import pers.zyc.tools.utils.lifecycle.Service;
 import pers.zyc.tools.utils.lifecycle.ServiceException;
-import pers.zyc.tools.utils.lifecycle.ThreadService;
+import pers.zyc.tools.utils.spi.SpiPluginUtil;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 
-import java.util.Collection;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.*;
 
 /**
  * @author zhangyancheng
  */
-public class NetService extends ThreadService implements EventSource<ChannelEvent> {
+public class NetService extends Service implements EventSource<ChannelEvent> {
 	/**
-	 * Channel保存Promise Map键
+	 * Channel保存请求Promise表键
 	 */
-	private static final AttributeKey<Map<Integer, ResponsePromise>> RESPONSE_PROMISE_KEY =
+	private static final AttributeKey<ResponsePromiseTable> RESPONSE_PROMISE_KEY =
 			AttributeKey.newInstance("CHANNEL_RESPONSE_PROMISE");
 
+	/**
+	 * Channel保存流式响应键
+	 */
+	private static final AttributeKey<ChannelResponseStreams> RESPONSE_STREAMS_KEY =
+			AttributeKey.newInstance("CHANNEL_RESPONSE_STREAMS");
+
+	/**
+	 * Channel保存正在接收的流式请求键
+	 */
+	private static final AttributeKey<ChannelRequestStreams> REQUEST_STREAMS_KEY =
+			AttributeKey.newInstance("CHANNEL_REQUEST_STREAMS");
+
+	/**
+	 * Channel保存可写等待锁键，发送线程在锁上等待连接可写，连接可写或者关闭时唤醒
+	 */
+	private static final AttributeKey<Object> WRITABILITY_LOCK_KEY =
+			AttributeKey.newInstance("CHANNEL_WRITABILITY_LOCK");
+
+	/**
+	 * 连接不可写（写缓冲超过高水位）时的发送方式
+	 */
+	public enum UnwritableSendMode {
+		/**
+		 * 忽略，继续写入写缓冲
+		 */
+		IGNORE,
+
+		/**
+		 * 立即失败
+		 */
+		FAIL_FAST,
+
+		/**
+		 * 等待连接可写，等待超时（或者在连接的IO线程中发送）时失败
+		 */
+		WAIT
+	}
+
 	/**
 	 * 连接超时时间（ms）
 	 */
@@ -52,6 +103,54 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 	 */
 	private int selectors = 0;
 
+	/**
+	 * 是否使用epoll（仅Linux且native库可用时生效，否则使用nio）
+	 */
+	private boolean useEPoll;
+
+	/**
+	 * epoll是否使用边缘触发模式（false为水平触发），仅使用epoll时生效
+	 *
+	 * {@link io.netty.channel.epoll.EpollChannelOption#EPOLL_MODE}
+	 */
+	private boolean epollEdgeTriggered = true;
+
+	/**
+	 * 是否开启TCP_QUICKACK（立即发送ACK，不等待延迟确认），仅使用epoll时生效
+	 *
+	 * {@link io.netty.channel.epoll.EpollChannelOption#TCP_QUICKACK}
+	 */
+	private boolean tcpQuickAck = false;
+
+	/**
+	 * 是否使用池化的ByteBuf分配器（同一JVM中的所有服务共享内存池）
+	 */
+	private boolean pooledAllocator = true;
+
+	/**
+	 * ByteBuf分配器是否优先分配堆外内存
+	 */
+	private boolean preferDirect = true;
+
+	/**
+	 * 连接写缓冲低水位（byte），写缓冲降到此值以下时连接重新可写
+	 *
+	 * {@link WriteBufferWaterMark#low()}
+	 */
+	private int writeBufferLowWaterMark = 32 * 1024;
+
+	/**
+	 * 连接写缓冲高水位（byte），写缓冲超过此值时连接不可写
+	 *
+	 * {@link WriteBufferWaterMark#high()}
+	 */
+	private int writeBufferHighWaterMark = 64 * 1024;
+
+	/**
+	 * ByteBuf分配器，服务启动时按配置选择
+	 */
+	private ByteBufAllocator allocator;
+
 	/**
 	 * 默认请求超时时间（ms）
 	 */
@@ -80,9 +179,90 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 	private int channelAllTimeout = 0;
 
 	/**
-	 * 请求超时清理周期（ms）
+	 * 写合并，连续多少次flush合并为一次真正的flush（系统调用），小于等于0表示不合并
+	 *
+	 * {@link FlushConsolidationHandler#explicitFlushAfterFlushes}
+	 */
+	private int flushConsolidationLimit = 0;
+
+	/**
+	 * 写合并开启时，非读事件中（例如业务线程发送请求）的flush是否也合并（延迟到IO线程当前任务之后执行）
+	 *
+	 * {@link FlushConsolidationHandler#consolidateWhenNoReadInProgress}
+	 */
+	private boolean flushConsolidateWhenNoReadInProgress = true;
+
+	/**
+	 * 是否回收命令，开启后解码请求时从对象池获取命令头，请求处理完成（响应发送后）回收请求，
+	 * 请求处理器不能在处理完成后继续持有请求。响应由调用方持有，不回收
+	 *
+	 * @see Command#recycle()
+	 */
+	private boolean recycleCommands = false;
+
+	/**
+	 * 命令体压缩算法，命令未指定算法时使用
+	 *
+	 * @see Command#compression()
+	 */
+	private Compression compression = Compression.NONE;
+
+	/**
+	 * 命令体压缩阈值（byte），命令体编码后小于此长度时不压缩
+	 */
+	private int compressionThreshold = 1024;
+
+	/**
+	 * 是否开启流式传输（发送{@link StreamRequest}），开启后连接增加ChunkedWriteHandler逐块写出流式请求
+	 */
+	private boolean streamEnabled = false;
+
+	/**
+	 * 每个连接排队未处理的流式请求数据块总大小上限（byte），超过后暂停读取
+	 */
+	private int maxPendingStreamBytes = 4 * 1024 * 1024;
+
+	/**
+	 * 请求过期时间（ms），开始处理请求时命令时间（发送方时间）早于此时间的请求不再处理，
+	 * 响应{@link NetworkException.RequestExpiredException}，小于等于0表示不检查
+	 *
+	 * 请求在执行器中排队过久时请求方通常已超时，丢弃这些请求使执行器尽快恢复，需要两端时钟基本同步
+	 */
+	private int requestExpireTime = 0;
+
+	/**
+	 * 是否在请求命令头中传递截止时间（请求超时时间），接收方丢弃已过截止时间的请求，
+	 * 处理请求期间发出的下游请求继承截止时间
+	 *
+	 * 开启后带截止时间的请求命令头按版本1编码（{@link Header#DEADLINE_VERSION}），增加4字节剩余时间，
+	 * 不识别命令头版本的旧版本接收方会把剩余时间误读为命令体，因此两端都升级后才能开启，
+	 * 不开启时命令头与旧版本相同
+	 *
+	 * @see RequestContext
+	 */
+	private boolean propagateDeadline = false;
+
+	/**
+	 * 请求超时检测间隔（ms），即超时时间轮的刻度，超时响应的最大延迟为一个刻度
+	 */
+	private int requestTimeoutDetectInterval = 10;
+
+	/**
+	 * 超时时间轮的槽数
+	 */
+	private int requestTimeoutWheelSize = 512;
+
+	/**
+	 * 连接不可写时的发送方式，默认忽略（写缓冲无上限）
+	 *
+	 * @see #setWriteBufferHighWaterMark(int)
+	 */
+	private UnwritableSendMode unwritableSendMode = UnwritableSendMode.IGNORE;
+
+	/**
+	 * 等待连接可写的最大时间（ms），不超过请求超时时间
 	 */
-	private int requestTimeoutDetectInterval = 1000;
+	private int unwritableWaitTimeout = 1000;
 
 	/**
 	 * 允许同时处理的最大请求数（小于0表示不做最大限制）
@@ -115,9 +295,39 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 	private Semaphore requestPermits;
 
 	/**
-	 * 所有发送了请求的Channel集合
+	 * 请求准入控制，为null时表示只使用全局请求许可
+	 */
+	private RequestLimiter requestLimiter;
+
+	/**
+	 * 指标采集，未设置时启动服务时通过SPI加载，没有SPI实现则使用{@link DefaultNetworkMetrics}
+	 */
+	private NetworkMetrics networkMetrics;
+
+	/**
+	 * 是否将指标注册为JMX MBean（指标实现了{@link NetworkMetricsMXBean}时）
+	 */
+	private boolean jmxEnabled = false;
+
+	/**
+	 * 已注册的指标MBean名称
 	 */
-	private final ConcurrentSet<Channel> requestedChannelSet = new ConcurrentSet<>();
+	private ObjectName metricsObjectName;
+
+	/**
+	 * 请求超时时间轮，每个请求在获取Promise时登记一次，响应后取消，每个刻度只处理到期的请求
+	 */
+	private HashedWheelTimer requestTimeoutTimer;
+
+	/**
+	 * 超时时间轮线程工厂，为null时使用默认线程名（TimeoutRequestCleaner）
+	 */
+	private ThreadFactory threadFactory;
+
+	/**
+	 * 超时时间轮线程（第一个请求登记时创建）
+	 */
+	private volatile Thread timeoutThread;
 
 	protected final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -158,8 +368,35 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 
 		requestPermits = maxProcessingRequests > 0 ? new Semaphore(maxProcessingRequests) : null;
 
-		//设置请求超时清理线程名
-		setThreadFactory(new GeneralThreadFactory("TimeoutRequestCleaner"));
+		if (pooledAllocator) {
+			//池化分配器的内存池（arena、线程缓存）由同一JVM中的所有服务共享
+			allocator = preferDirect ? PooledDirectAllocator.INSTANCE : PooledHeapAllocator.INSTANCE;
+		} else {
+			allocator = new UnpooledByteBufAllocator(preferDirect);
+		}
+
+		if (networkMetrics == null) {
+			for (NetworkMetrics metrics : SpiPluginUtil.loadPlugins(NetworkMetrics.class)) {
+				networkMetrics = metrics;
+				break;
+			}
+			if (networkMetrics == null) {
+				networkMetrics = new DefaultNetworkMetrics();
+			}
+		}
+		if (jmxEnabled && networkMetrics instanceof NetworkMetricsMXBean) {
+			registerMetricsMBean();
+		}
+
+		final ThreadFactory timerThreadFactory = threadFactory != null ? threadFactory :
+				new GeneralThreadFactory("TimeoutRequestCleaner");
+		requestTimeoutTimer = new HashedWheelTimer(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				return timeoutThread = timerThreadFactory.newThread(r);
+			}
+		}, requestTimeoutDetectInterval, TimeUnit.MILLISECONDS, requestTimeoutWheelSize);
 
 		//添加连接事件监听器，异常时关闭连接，连接关闭时清理所有通过此连接发送的请求
 		addListener(new EventListener<ChannelEvent>() {
@@ -179,41 +416,76 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 	}
 
 	@Override
-	protected Runnable getRunnable() {
-		return new ServiceRunnable() {
-
-			@Override
-			protected long getInterval() {
-				//超时请求检查间隔，超时清理的最大延迟为一个间隔
-				return requestTimeoutDetectInterval;
+	protected void doStop() throws Exception {
+		//结束所有等待中的请求和流式响应（时间轮中未到期的任务即为全部未完成的请求和流式响应）
+		for (Timeout timeout : requestTimeoutTimer.stop()) {
+			if (timeout.task() instanceof ResponseStream) {
+				((ResponseStream) timeout.task()).onEnd(new NetworkException("Service stopped!"));
+			} else {
+				respondPromise((ResponsePromise) timeout.task(), new NetworkException("Service stopped!"));
 			}
-
-			@Override
-			protected void execute() throws InterruptedException {
-				for (Channel channel : requestedChannelSet) {
-					Collection<ResponsePromise> promises = channel.attr(RESPONSE_PROMISE_KEY).get().values();
-					for (ResponsePromise promise : promises) {
-						if (promise.deadline <= SystemMillis.current()) {
-							logger.debug("Request: {} timeout, Channel: {}", promise.request, channel);
-							respondPromise(promise, new NetworkException.TimeoutException());
-							promises.remove(promise);
-						}
-					}
-					if (promises.isEmpty()) {
-						requestedChannelSet.remove(channel);
-					}
-				}
+		}
+		if (metricsObjectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsObjectName);
+			} catch (Exception e) {
+				logger.warn("Unregister metrics MBean {} failed: {}", metricsObjectName, e.getMessage());
 			}
-		};
+			metricsObjectName = null;
+		}
 	}
 
-	@Override
-	protected void doStop() throws Exception {
-		//结束所有等待中的请求
-		for (Channel channel : requestedChannelSet) {
-			respondAllChannelPromise(channel, new NetworkException("Service stopped!"));
+	/**
+	 * 共享的优先分配堆外内存的池化分配器，首次使用时创建
+	 */
+	private static class PooledDirectAllocator {
+		static final ByteBufAllocator INSTANCE = new PooledByteBufAllocator(true);
+	}
+
+	/**
+	 * 共享的优先分配堆内存的池化分配器，首次使用时创建
+	 */
+	private static class PooledHeapAllocator {
+		static final ByteBufAllocator INSTANCE = new PooledByteBufAllocator(false);
+	}
+
+	private void registerMetricsMBean() {
+		try {
+			ObjectName objectName = new ObjectName("pers.zyc.tools.network:type=NetworkMetrics,name=" +
+					ObjectName.quote(getName()));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(networkMetrics, objectName);
+			metricsObjectName = objectName;
+		} catch (Exception e) {
+			logger.warn("Register metrics MBean failed: {}", e.getMessage());
 		}
-		super.doStop();
+	}
+
+	/**
+	 * @return 是否使用epoll（开启了epoll并且当前平台可用）
+	 */
+	protected boolean isEPollAvailable() {
+		return useEPoll && Epoll.isAvailable();
+	}
+
+	/**
+	 * @return epoll触发模式
+	 */
+	protected EpollMode getEPollMode() {
+		return epollEdgeTriggered ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+	}
+
+	/**
+	 * @return 连接写缓冲水位
+	 */
+	protected WriteBufferWaterMark getWriteBufferWaterMark() {
+		return new WriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark);
+	}
+
+	/**
+	 * @return ByteBuf分配器，服务启动后可用
+	 */
+	protected ByteBufAllocator getAllocator() {
+		return allocator;
 	}
 
 	@Override
@@ -234,6 +506,7 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 	 * @throws ServiceException.NotRunningException 服务未运行
 	 * @throws NetworkException.TimeoutException 请求超时
 	 * @throws NetworkException.TooMuchRequestException 请求过多
+	 * @throws NetworkException.ChannelUnwritableException 连接不可写
 	 * @throws NetworkException 发送失败
 	 */
 	public void sendOneWay(Request request) throws InterruptedException {
@@ -249,6 +522,7 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 	 * @throws ServiceException.NotRunningException 服务未运行
 	 * @throws NetworkException.TimeoutException 请求超时
 	 * @throws NetworkException.TooMuchRequestException 请求过多
+	 * @throws NetworkException.ChannelUnwritableException 连接不可写
 	 * @throws NetworkException 发送失败
 	 */
 	public void sendOneWay(Request request, int requestTimeout) throws InterruptedException {
@@ -261,8 +535,12 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 			throw new IllegalArgumentException("One-way request need ack");
 		}
 
+		if (request instanceof StreamRequest && !streamEnabled) {
+			throw new IllegalStateException("Stream disabled, at " + getName());
+		}
 		Channel channel = request.getChannel();
-		final ResponsePromise responsePromise = acquirePromise(request, requestTimeout);
+		awaitWritable(channel, requestTimeout);
+		final ResponsePromise responsePromise = acquirePromise(request, requestTimeout, null);
 		channel.writeAndFlush(request).addListeners(new CommandSendFutureListener(request) {
 			@Override
 			public void operationComplete(ChannelFuture future) throws Exception {
@@ -283,6 +561,7 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 	 * @throws ServiceException.NotRunningException 服务未运行
 	 * @throws NetworkException.TimeoutException 请求超时
 	 * @throws NetworkException.TooMuchRequestException 请求过多
+	 * @throws NetworkException.ChannelUnwritableException 连接不可写
 	 * @throws NetworkException 发送失败
 	 */
 	public Response sendSync(Request request) throws InterruptedException {
@@ -299,85 +578,533 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 	 * @throws ServiceException.NotRunningException 服务未运行
 	 * @throws NetworkException.TimeoutException 请求超时
 	 * @throws NetworkException.TooMuchRequestException 请求过多
+	 * @throws NetworkException.ChannelUnwritableException 连接不可写
 	 * @throws NetworkException 其他网络异常
 	 */
-	public Response sendSync(Request request, int requestTimeout) throws InterruptedException {
-		return sendAsync(request, requestTimeout).get();
+	public Response sendSync(Request request, int requestTimeout) throws InterruptedException {
+		return sendAsync(request, requestTimeout).get();
+	}
+
+	/**
+	 * 异步发送请求
+	 *
+	 * @param request 请求
+	 * @return 响应Future
+	 * @throws ServiceException.NotRunningException 服务未运行
+	 * @throws NetworkException.TooMuchRequestException 请求过多
+	 * @throws NetworkException.ChannelUnwritableException 连接不可写
+	 * @throws NetworkException.RequestExpiredException 当前线程处理的请求已过截止时间
+	 */
+	public ResponseFuture sendAsync(Request request) {
+		return sendAsync(request, requestTimeout);
+	}
+
+	/**
+	 * 异步发送请求
+	 *
+	 * @param request 请求
+	 * @param requestTimeout 请求超时（ms）
+	 * @return 响应Future
+	 * @throws ServiceException.NotRunningException 服务未运行
+	 * @throws NetworkException.TooMuchRequestException 请求过多
+	 * @throws NetworkException.ChannelUnwritableException 连接不可写
+	 * @throws NetworkException.RequestExpiredException 当前线程处理的请求已过截止时间
+	 */
+	public ResponseFuture sendAsync(Request request, int requestTimeout) {
+		return send(request, requestTimeout, null, true);
+	}
+
+	/**
+	 * 异步发送请求
+	 *
+	 * 不立即flush时请求只写入连接的出站缓冲，需要调用{@link #flush(Channel)}写出，
+	 * 可用于批量发送多个请求后只做一次flush（一次系统调用）
+	 *
+	 * @param request 请求
+	 * @param requestTimeout 请求超时（ms）
+	 * @param flush 是否立即flush
+	 * @return 响应Future
+	 * @throws ServiceException.NotRunningException 服务未运行
+	 * @throws NetworkException.TooMuchRequestException 请求过多
+	 * @throws NetworkException.ChannelUnwritableException 连接不可写
+	 * @throws NetworkException.RequestExpiredException 当前线程处理的请求已过截止时间
+	 */
+	public ResponseFuture sendAsync(Request request, int requestTimeout, boolean flush) {
+		return send(request, requestTimeout, null, flush);
+	}
+
+	/**
+	 * 发送流式响应请求，服务端通过{@link StreamResponseHandler}返回多个响应
+	 *
+	 * 服务端超过请求超时时间没有推送响应（也没有结束）时，流式响应以{@link NetworkException.TimeoutException}结束
+	 *
+	 * @param request 请求（必须是需要ack类型）
+	 * @param window 许可窗口，服务端最多领先消费端发送的响应数
+	 * @return 流式响应，消费完或者不再消费时需关闭
+	 * @throws ServiceException.NotRunningException 服务未运行
+	 * @throws NetworkException.ChannelUnwritableException 连接不可写
+	 */
+	public ResponseStream sendStream(final Request request, int window) {
+		if (window <= 0) {
+			throw new IllegalArgumentException("window " + window + " <= 0");
+		}
+		if (!request.getHeader().isNeedAck()) {
+			throw new IllegalArgumentException("Stream request need ack");
+		}
+		checkRunning();
+
+		final Channel channel = request.getChannel();
+		awaitWritable(channel, requestTimeout);
+		final ResponseStream responseStream = new ResponseStream(this, request, window, requestTimeout);
+		responseStream.timeout = requestTimeoutTimer.newTimeout(responseStream, requestTimeout, TimeUnit.MILLISECONDS);
+		channel.write(request).addListener(new CommandSendFutureListener(request) {
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				super.operationComplete(future);
+
+				if (future.isSuccess()) {
+					//请求发送成功（写入网络）后记录流式响应（当前为IO线程），已关闭的不再记录
+					if (!responseStream.isDone()) {
+						channel.attr(RESPONSE_STREAMS_KEY).get().streams.put(request.getId(), responseStream);
+					}
+				} else {
+					responseStream.onEnd(new NetworkException(future.cause()));
+				}
+			}
+		});
+		//授予初始许可
+		StreamCredit credit = new StreamCredit(request, window);
+		channel.writeAndFlush(credit).addListener(new CommandSendFutureListener(credit));
+		return responseStream;
+	}
+
+	/**
+	 * 消费端补充许可
+	 *
+	 * @param responseStream 流式响应
+	 * @param credits 许可数
+	 */
+	void sendStreamCredit(ResponseStream responseStream, int credits) {
+		StreamCredit credit = new StreamCredit(responseStream.request, credits);
+		responseStream.request.getChannel().writeAndFlush(credit).addListener(new CommandSendFutureListener(credit));
+	}
+
+	/**
+	 * 消费端关闭未结束的流式响应，通知服务端取消
+	 *
+	 * @param responseStream 流式响应
+	 */
+	void cancelResponseStream(final ResponseStream responseStream) {
+		final Channel channel = responseStream.request.getChannel();
+		executeInEventLoop(channel, new Runnable() {
+			@Override
+			public void run() {
+				int requestId = responseStream.request.getId();
+				ChannelResponseStreams responseStreams = channel.attr(RESPONSE_STREAMS_KEY).get();
+				if (responseStreams.streams.get(requestId) == responseStream) {
+					responseStreams.streams.remove(requestId);
+				}
+				sendStreamCredit(responseStream, StreamCredit.CANCEL);
+			}
+		});
+	}
+
+	/**
+	 * IO线程中调用，开始处理流式响应请求
+	 *
+	 * @param channel 连接
+	 * @param request 请求
+	 * @param handler 流式响应处理器
+	 */
+	private void startResponseStream(final Channel channel, final Request request,
+									 final StreamResponseHandler handler) {
+		request.setChannel(channel);
+		final int requestId = request.getId();
+		final ResponseSink responseSink = new ResponseSink(this, request);
+		final ChannelResponseStreams responseStreams = channel.attr(RESPONSE_STREAMS_KEY).get();
+		responseStreams.sinks.put(requestId, responseSink);
+
+		try {
+			handler.getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					String error = null;
+					Long previousDeadline = RequestContext.enter(request);
+					try {
+						handler.handleStream(request, responseSink);
+					} catch (Exception e) {
+						logger.error(request + " stream handle failed, Channel: " + channel, e);
+						error = e.toString();
+					} finally {
+						RequestContext.restore(previousDeadline);
+					}
+					if (!responseSink.isCancelled()) {
+						StreamEnd streamEnd = new StreamEnd(request, error);
+						channel.writeAndFlush(streamEnd).addListener(new CommandSendFutureListener(streamEnd));
+					}
+					executeInEventLoop(channel, new Runnable() {
+						@Override
+						public void run() {
+							if (responseStreams.sinks.get(requestId) == responseSink) {
+								responseStreams.sinks.remove(requestId);
+							}
+						}
+					});
+
+					//流已结束，处理器不再使用请求
+					if (recycleCommands) {
+						request.recycle();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			//执行器饱和（例如有界线程池队列已满）
+			responseStreams.sinks.remove(requestId);
+			StreamEnd streamEnd = new StreamEnd(request, new NetworkException.TooMuchRequestException().toString());
+			channel.writeAndFlush(streamEnd).addListener(new CommandSendFutureListener(streamEnd));
+			if (recycleCommands) {
+				request.recycle();
+			}
+		}
+	}
+
+	/**
+	 * 写出连接出站缓冲中的所有数据
+	 *
+	 * @param channel 连接
+	 */
+	public void flush(Channel channel) {
+		channel.flush();
+	}
+
+	/**
+	 * 发送请求
+	 *
+	 * @param request 请求
+	 * @param requestTimeout 请求超时（ms）
+	 * @param bridge 请求结束时需要完成的Promise，可以为null
+	 * @param flush 是否立即flush
+	 * @return 响应Promise
+	 */
+	ResponsePromise send(final Request request, int requestTimeout, Promise<Response> bridge, boolean flush) {
+		if (!(requestTimeout > 0)) {
+			throw new IllegalArgumentException("requestTimeout " + requestTimeout + " <= 0");
+		}
+		checkRunning();
+
+		if (request instanceof StreamRequest && !streamEnabled) {
+			throw new IllegalStateException("Stream disabled, at " + getName());
+		}
+		final Channel channel = Objects.requireNonNull(request).getChannel();
+		awaitWritable(channel, requestTimeout);
+		final ResponsePromise responsePromise = acquirePromise(request, requestTimeout, bridge);
+		ChannelFuture writeFuture = flush ? channel.writeAndFlush(request) : channel.write(request);
+		writeFuture.addListener(new CommandSendFutureListener(request) {
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				super.operationComplete(future);
+
+				if (future.isSuccess()) {
+					//请求发送成功（写入网络）后记录Promise（当前为IO线程），等待响应或者超时
+					ResponsePromiseTable responsePromiseTable = channel.attr(RESPONSE_PROMISE_KEY).get();
+					responsePromiseTable.put(responsePromise);
+					if (responsePromise.isDone()) {
+						//写完成前已经超时
+						responsePromiseTable.remove(responsePromise);
+					}
+				} else {
+					//发送失败后响应
+					respondPromise(responsePromise, future.cause());
+				}
+			}
+		});
+		return responsePromise;
+	}
+
+	/**
+	 * 异步发送请求，请求结束时（收到响应、超时或者发送失败）直接完成给定的Promise
+	 *
+	 * Promise的监听器在完成线程（IO线程或者超时线程）中执行（取决于Promise的执行器），
+	 * 可以通过监听器串联后续请求，或者通过{@link ResponseFutures}聚合多个请求，不占用等待线程
+	 *
+	 * @param request 请求
+	 * @param promise 响应Promise，例如：ImmediateEventExecutor.INSTANCE.newPromise()
+	 * @return 传入的Promise
+	 * @throws ServiceException.NotRunningException 服务未运行
+	 * @throws NetworkException.TooMuchRequestException 请求过多
+	 * @throws NetworkException.ChannelUnwritableException 连接不可写
+	 */
+	public Future<Response> sendAsync(Request request, Promise<Response> promise) {
+		return sendAsync(request, requestTimeout, promise);
+	}
+
+	/**
+	 * 异步发送请求，请求结束时（收到响应、超时或者发送失败）直接完成给定的Promise
+	 *
+	 * @param request 请求
+	 * @param requestTimeout 请求超时（ms）
+	 * @param promise 响应Promise，例如：ImmediateEventExecutor.INSTANCE.newPromise()
+	 * @return 传入的Promise
+	 * @throws ServiceException.NotRunningException 服务未运行
+	 * @throws NetworkException.TooMuchRequestException 请求过多
+	 * @throws NetworkException.ChannelUnwritableException 连接不可写
+	 */
+	public Future<Response> sendAsync(Request request, int requestTimeout, Promise<Response> promise) {
+		send(request, requestTimeout, Objects.requireNonNull(promise), true);
+		return promise;
+	}
+
+	/**
+	 * 按不可写发送方式检查连接是否可写
+	 *
+	 * @param channel 连接
+	 * @param requestTimeout 请求超时（ms）
+	 * @throws NetworkException.ChannelUnwritableException 连接不可写
+	 */
+	private void awaitWritable(Channel channel, int requestTimeout) {
+		if (unwritableSendMode == UnwritableSendMode.IGNORE || channel.isWritable()) {
+			return;
+		}
+		//IO线程中等待会导致写缓冲永远无法写出，直接失败
+		if (unwritableSendMode == UnwritableSendMode.WAIT && !channel.eventLoop().inEventLoop()) {
+			Object lock = getChannelWritabilityLock(channel);
+			long remaining = Math.min(unwritableWaitTimeout, requestTimeout);
+			synchronized (lock) {
+				try {
+					while (!channel.isWritable() && channel.isActive() && remaining > 0) {
+						long now = SystemMillis.current();
+						lock.wait(remaining);
+						remaining -= SystemMillis.current() - now;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (channel.isWritable()) {
+				return;
+			}
+		}
+		throw new NetworkException.ChannelUnwritableException();
+	}
+
+	private static Object getChannelWritabilityLock(Channel channel) {
+		Object lock = channel.attr(WRITABILITY_LOCK_KEY).get();
+		if (lock == null) {
+			Object newLock = new Object();
+			lock = channel.attr(WRITABILITY_LOCK_KEY).setIfAbsent(newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
+
+	private ChannelRequestStreams getChannelRequestStreams(Channel channel) {
+		//只在IO线程中访问
+		ChannelRequestStreams requestStreams = channel.attr(REQUEST_STREAMS_KEY).get();
+		if (requestStreams == null) {
+			requestStreams = new ChannelRequestStreams(this, channel, maxPendingStreamBytes);
+			channel.attr(REQUEST_STREAMS_KEY).set(requestStreams);
+		}
+		return requestStreams;
+	}
+
+	/**
+	 * 唤醒所有等待连接可写的发送线程
+	 *
+	 * @param channel 连接
+	 */
+	private static void signalWritabilityWaiters(Channel channel) {
+		Object lock = channel.attr(WRITABILITY_LOCK_KEY).get();
+		if (lock != null) {
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * 返回连接上已写出、等待响应的请求数
+	 *
+	 * @param channel 连接
+	 * @return 等待响应的请求数
+	 */
+	public int getInFlightRequests(Channel channel) {
+		ResponsePromiseTable responsePromiseTable = channel.attr(RESPONSE_PROMISE_KEY).get();
+		return responsePromiseTable == null ? 0 : responsePromiseTable.size();
+	}
+
+	/**
+	 * 在连接的IO线程中执行，请求Promise表只能在IO线程中修改
+	 *
+	 * @param channel 连接
+	 * @param task 任务
+	 */
+	private void executeInEventLoop(Channel channel, Runnable task) {
+		EventLoop eventLoop = channel.eventLoop();
+		if (eventLoop.inEventLoop()) {
+			task.run();
+		} else {
+			try {
+				eventLoop.execute(task);
+			} catch (RejectedExecutionException e) {
+				//IO线程已关闭（服务停止），未完成的请求由停止时统一结束
+				logger.debug("Event loop rejected, Channel: {}", channel);
+			}
+		}
+	}
+
+	/**
+	 * @param requestType 请求类型
+	 * @return 请求处理器，不存在返回null
+	 */
+	RequestHandler getRequestHandler(int requestType) {
+		return requestHandlerFactory.getHandler(requestType);
 	}
 
 	/**
-	 * 异步发送请求
+	 * 请求处理异常
 	 *
+	 * @param cause 异常
 	 * @param request 请求
-	 * @return 响应Future
-	 * @throws ServiceException.NotRunningException 服务未运行
-	 * @throws NetworkException.TooMuchRequestException 请求过多
+	 * @return 响应，可能为null
 	 */
-	public ResponseFuture sendAsync(Request request) {
-		return sendAsync(request, requestTimeout);
+	Response handleRequestException(Exception cause, Request request) {
+		return requestHandleExceptionHandler.handleException(cause, request);
 	}
 
 	/**
-	 * 异步发送请求
+	 * 请求是否已过期
 	 *
 	 * @param request 请求
-	 * @param requestTimeout 请求超时（ms）
-	 * @return 响应Future
-	 * @throws ServiceException.NotRunningException 服务未运行
-	 * @throws NetworkException.TooMuchRequestException 请求过多
+	 * @return 是否过期
 	 */
-	public ResponseFuture sendAsync(final Request request, int requestTimeout) {
-		if (!(requestTimeout > 0)) {
-			throw new IllegalArgumentException("requestTimeout " + requestTimeout + " <= 0");
-		}
-		checkRunning();
-
-		final Channel channel = request.getChannel();
-		final ResponsePromise responsePromise = acquirePromise(Objects.requireNonNull(request), requestTimeout);
-		channel.writeAndFlush(request).addListener(new CommandSendFutureListener(request) {
-			@Override
-			public void operationComplete(ChannelFuture future) throws Exception {
-				super.operationComplete(future);
+	boolean isExpired(Request request) {
+		return requestExpireTime > 0 &&
+				SystemMillis.current() - request.getHeader().getCommandTime() > requestExpireTime;
+	}
 
-				if (future.isSuccess()) {
-					//请求发送成功（写入网络）后记录Promise，等待响应或者超时
-					requestedChannelSet.add(channel);
-					getChannelResponsePromiseMap(channel).put(request.getId(), responsePromise);
-				} else {
-					//发送失败后响应
-					respondPromise(responsePromise, future.cause());
-				}
-			}
-		});
-		return responsePromise;
+	/**
+	 * 丢弃已过截止时间的请求（请求方已超时，不需要响应）
+	 *
+	 * @param request 请求
+	 */
+	private void dropExpiredRequest(Request request) {
+		logger.debug("Request: {} expired, dropped, Channel: {}", request, request.getChannel());
+		if (recycleCommands) {
+			request.recycle();
+		}
 	}
 
-	private static Map<Integer, ResponsePromise> getChannelResponsePromiseMap(Channel channel) {
-		Map<Integer, ResponsePromise> responsePromiseMap = channel.attr(RESPONSE_PROMISE_KEY).get();
-		if (responsePromiseMap == null) {
-			Map<Integer, ResponsePromise> promiseMap = new ConcurrentHashMap<>();
-			responsePromiseMap = channel.attr(RESPONSE_PROMISE_KEY).setIfAbsent(promiseMap);
-			if (responsePromiseMap == null) {
-				responsePromiseMap = promiseMap;
-			}
+	/**
+	 * 请求需要应答时写出响应
+	 *
+	 * @param request 请求
+	 * @param response 响应，为null时不写出
+	 */
+	void writeResponse(Request request, Response response) {
+		if (request.getHeader().isNeedAck() && response != null) {
+			request.getChannel().writeAndFlush(response).addListener(new CommandSendFutureListener(response));
 		}
-		return responsePromiseMap;
 	}
 
 	private void respondPromise(ResponsePromise promise, Object response) {
 		if (promise.response(response)) {
+			//超时任务在请求发出前登记，此处为null仅可能是时间轮线程在赋值前就已到期执行
+			Timeout timeout = promise.timeout;
+			if (timeout != null) {
+				timeout.cancel();
+			}
 			if (requestPermits != null) {
 				requestPermits.release();
 			}
+			long rttNanos = System.nanoTime() - promise.startNanos;
+			if (requestLimiter != null) {
+				requestLimiter.release(promise.request, rttNanos, response instanceof Throwable);
+			}
+			networkMetrics.requestCompleted(promise.request, rttNanos,
+					response instanceof Throwable ? (Throwable) response : null);
+		}
+	}
+
+	/**
+	 * 时间轮线程调用，请求超时
+	 *
+	 * @param promise 超时的请求Promise
+	 */
+	void requestTimeout(final ResponsePromise promise) {
+		Channel channel = promise.request.getChannel();
+		logger.debug("Request: {} timeout, Channel: {}", promise.request, channel);
+		respondPromise(promise, new NetworkException.TimeoutException());
+		removeChannelPromise(promise);
+	}
+
+	/**
+	 * 取消请求，以{@link NetworkException.RequestCancelledException}结束请求并释放请求许可，
+	 * 之后到达的响应将被丢弃
+	 *
+	 * @param promise 请求Promise
+	 */
+	void cancelRequest(ResponsePromise promise) {
+		if (!promise.isDone()) {
+			respondPromise(promise, new NetworkException.RequestCancelledException());
+			removeChannelPromise(promise);
+		}
+	}
+
+	private void removeChannelPromise(final ResponsePromise promise) {
+		Channel channel = promise.request.getChannel();
+		final ResponsePromiseTable responsePromiseTable = channel.attr(RESPONSE_PROMISE_KEY).get();
+		if (responsePromiseTable != null) {
+			executeInEventLoop(channel, new Runnable() {
+				@Override
+				public void run() {
+					responsePromiseTable.remove(promise);
+				}
+			});
 		}
 	}
 
-	private ResponsePromise acquirePromise(Request request, int requestTimeout) {
+	private ResponsePromise acquirePromise(Request request, int requestTimeout, Promise<Response> bridge) {
+		//处理请求期间发出的请求继承截止时间
+		long remainingTime = RequestContext.getRemainingTime();
+		if (remainingTime <= 0) {
+			throw new NetworkException.RequestExpiredException();
+		}
+		if (remainingTime < requestTimeout) {
+			requestTimeout = (int) remainingTime;
+		}
+
 		//如果设置了请求许可则必需获取许可才能发送请求
 		if (requestPermits != null && !requestPermits.tryAcquire()) {
 			throw new NetworkException.TooMuchRequestException();
 		}
-		return new ResponsePromise(request, requestTimeout, new Multicaster<ResponseFutureListener>() {
+		if (requestLimiter != null) {
+			try {
+				requestLimiter.acquire(request);
+			} catch (RuntimeException e) {
+				if (requestPermits != null) {
+					requestPermits.release();
+				}
+				throw e;
+			}
+		}
+		ResponsePromise promise = new ResponsePromise(this, request, requestTimeout, bridge);
+		if (propagateDeadline) {
+			request.getHeader().setDeadline(SystemMillis.current() + requestTimeout);
+		}
+		promise.timeout = requestTimeoutTimer.newTimeout(promise, requestTimeout, TimeUnit.MILLISECONDS);
+		networkMetrics.requestStarted(request);
+		return promise;
+	}
+
+	/**
+	 * 创建响应广播器，只在单个请求添加了多个监听器时调用
+	 *
+	 * @return 响应广播器
+	 */
+	Multicaster<ResponseFutureListener> createResponseMulticaster() {
+		return new Multicaster<ResponseFutureListener>() {
 			{
 				if (multicastExecutor != null) {
 					setMulticastExecutor(multicastExecutor);
@@ -385,16 +1112,44 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 				setExceptionHandler(multicastExceptionHandler);
 				setEventListeners(new HashSet<ResponseFutureListener>());
 			}
-		});
+		};
 	}
 
-	private void respondAllChannelPromise(Channel channel, Throwable cause) {
-		Map<Integer, ResponsePromise> responsePromiseMap = channel.attr(RESPONSE_PROMISE_KEY).get();
-		if (responsePromiseMap != null) {
-			requestedChannelSet.remove(channel);
-			for (ResponsePromise promise : responsePromiseMap.values()) {
-				promise.response(cause);
+	/**
+	 * 给单个监听器通知请求结果，设置了广播执行器则在执行器中通知
+	 *
+	 * @param promise 已完成的请求Promise
+	 * @param listener 监听器
+	 */
+	void notifyResponseListener(final ResponsePromise promise, final ResponseFutureListener listener) {
+		Runnable notifier = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					promise.notifyListener(listener);
+				} catch (Throwable e) {
+					logger.error("Notify response listener error, " + promise.request, e);
+				}
 			}
+		};
+		if (multicastExecutor != null) {
+			multicastExecutor.execute(notifier);
+		} else {
+			notifier.run();
+		}
+	}
+
+	private void respondAllChannelPromise(Channel channel, final Throwable cause) {
+		final ResponsePromiseTable responsePromiseTable = channel.attr(RESPONSE_PROMISE_KEY).get();
+		if (responsePromiseTable != null) {
+			executeInEventLoop(channel, new Runnable() {
+				@Override
+				public void run() {
+					for (ResponsePromise promise : responsePromiseTable.removeAll()) {
+						respondPromise(promise, cause);
+					}
+				}
+			});
 		}
 	}
 
@@ -416,6 +1171,7 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 			if (!future.isSuccess()) {
 				logger.error("{} send failed, error: {}, Channel{}",
 						command, future.cause().getMessage(), future.channel());
+				networkMetrics.sendFailed(command, future.cause());
 			}
 		}
 	}
@@ -427,16 +1183,27 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 
 		final ChannelHandler commandHandler = new CommandHandler();
 		final ChannelHandler channelStateHandler = new ChannelStateHandler();
+		final ChannelHandler byteCountHandler = new ByteCountHandler();
 
 		@Override
 		protected void initChannel(Channel channel) throws Exception {
+			channel.attr(RESPONSE_PROMISE_KEY).set(new ResponsePromiseTable());
+			channel.attr(RESPONSE_STREAMS_KEY).set(new ChannelResponseStreams());
 			assemblePipeline(channel.pipeline());
 		}
 
 		protected void assemblePipeline(ChannelPipeline pipeline) {
+			if (flushConsolidationLimit > 0) {
+				//写合并需位于pipeline最前（最靠近head），合并所有handler发起的flush
+				pipeline.addLast(new FlushConsolidationHandler(flushConsolidationLimit,
+						flushConsolidateWhenNoReadInProgress));
+			}
+			pipeline.addLast(byteCountHandler, new Encoder(), new Decoder());
+			if (streamEnabled) {
+				//流式请求由ChunkedWriteHandler逐块写出，连接不可写时暂停读取请求内容
+				pipeline.addLast(new ChunkedWriteHandler());
+			}
 			pipeline.addLast(
-					new Encoder(),
-					new Decoder(),
 					new IdleStateHandler(
 							channelReadTimeout,
 							channelWriteTimeout,
@@ -449,6 +1216,31 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 		}
 	}
 
+	/**
+	 * 统计连接读写字节数，位于编解码器之前（靠近head），统计的是网络上的字节数
+	 */
+	@ChannelHandler.Sharable
+	private class ByteCountHandler extends ChannelDuplexHandler {
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			if (msg instanceof ByteBuf) {
+				networkMetrics.bytesRead(((ByteBuf) msg).readableBytes());
+			}
+			ctx.fireChannelRead(msg);
+		}
+
+		@Override
+		public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+			if (msg instanceof ByteBuf) {
+				networkMetrics.bytesWritten(((ByteBuf) msg).readableBytes());
+			} else if (msg instanceof FileRegion) {
+				networkMetrics.bytesWritten(((FileRegion) msg).count());
+			}
+			ctx.write(msg, promise);
+		}
+	}
+
 	/**
 	 * 命令处理器，处理入站数据
 	 *
@@ -462,7 +1254,24 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 			final Channel channel = ctx.channel();
 			switch (command.getHeader().getType()) {
 				case Header.REQUEST:
+					if (command instanceof StreamChunk) {
+						getChannelRequestStreams(channel).dispatch((StreamChunk) command);
+						break;
+					}
 					final Request request = (Request) command;
+					if (request.getHeader().isExpired()) {
+						//请求方已超时，不再处理
+						dropExpiredRequest(request);
+						break;
+					}
+					if (requestHandlerFactory instanceof StreamResponseHandlerFactory) {
+						StreamResponseHandler streamHandler = ((StreamResponseHandlerFactory) requestHandlerFactory)
+								.getStreamHandler(request.getType());
+						if (streamHandler != null) {
+							startResponseStream(channel, request, streamHandler);
+							break;
+						}
+					}
 					final RequestHandler requestHandler = requestHandlerFactory.getHandler(request.getType());
 					if (requestHandler == null) {
 						throw new NetworkException("Unsupported request type: " +
@@ -472,33 +1281,72 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 					if (handlerExecutor == null) {
 						handlerExecutor = BaseRequestHandler.SYNC_EXECUTOR;
 					}
-					handlerExecutor.execute(new Runnable() {
-						@Override
-						public void run() {
-							request.setChannel(channel);
-
-							Response response;
-							try {
-								response = requestHandler.handle(request);
-							} catch (Exception e) {
-								response = requestHandleExceptionHandler.handleException(e, request);
-							}
-
-							if (request.getHeader().isNeedAck() && response != null) {
-								channel.writeAndFlush(response).addListener(new CommandSendFutureListener(response));
+					if (requestHandler instanceof BatchingRequestHandler &&
+							handlerExecutor != BaseRequestHandler.SYNC_EXECUTOR) {
+						//没有执行器时（注册时已检查）按普通请求在IO线程中单独处理
+						request.setChannel(channel);
+						((BatchingRequestHandler<?>) requestHandler).submit(NetService.this, request);
+						break;
+					}
+					request.setChannel(channel);
+					final long dispatchNanos = System.nanoTime();
+					try {
+						handlerExecutor.execute(new Runnable() {
+							@Override
+							public void run() {
+								if (request.getHeader().isExpired()) {
+									//在执行器中排队期间已过截止时间
+									dropExpiredRequest(request);
+									return;
+								}
+								Response response;
+								Long previousDeadline = RequestContext.enter(request);
+								long beginNanos = System.nanoTime();
+								try {
+									if (isExpired(request)) {
+										throw new NetworkException.RequestExpiredException();
+									}
+									response = requestHandler.handle(request);
+								} catch (Exception e) {
+									response = handleRequestException(e, request);
+								} finally {
+									RequestContext.restore(previousDeadline);
+								}
+								networkMetrics.requestHandled(request, beginNanos - dispatchNanos,
+										System.nanoTime() - beginNanos);
+								writeResponse(request, response);
+
+								if (recycleCommands) {
+									request.recycle();
+								}
 							}
-						}
-					});
+						});
+					} catch (RejectedExecutionException e) {
+						//执行器饱和（例如有界线程池队列已满）
+						writeResponse(request, handleRequestException(new NetworkException.TooMuchRequestException(), request));
+					}
 					break;
 				case Header.RESPONSE:
 					Response response = (Response) command;
 
-					Map<Integer, ResponsePromise> responsePromiseMap = channel.attr(RESPONSE_PROMISE_KEY).get();
-					ResponsePromise responsePromise = responsePromiseMap.remove(response.getId());
-
-					if (responsePromiseMap.isEmpty()) {
-						requestedChannelSet.remove(channel);
+					if (response.getHeader().isStreamChunk()) {
+						ChannelResponseStreams responseStreams = channel.attr(RESPONSE_STREAMS_KEY).get();
+						ResponseStream responseStream = responseStreams.streams.get(response.getId());
+						if (responseStream == null) {
+							logger.debug("ID[{}] {} stream not matched!", response.getId(), response);
+						} else if (response instanceof StreamEnd) {
+							responseStreams.streams.remove(response.getId());
+							String error = ((StreamEnd) response).error;
+							responseStream.onEnd(error == null ? null : new NetworkException(error));
+						} else {
+							responseStream.onResponse(response);
+						}
+						break;
 					}
+
+					ResponsePromiseTable responsePromiseTable = channel.attr(RESPONSE_PROMISE_KEY).get();
+					ResponsePromise responsePromise = responsePromiseTable.remove(response.getId());
+
 					if (responsePromise != null) {
 						//收到response后响应
 						respondPromise(responsePromise, response);
@@ -506,6 +1354,13 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 						logger.warn("ID[{}] {} not matched!", response.getId(), response);
 					}
 					break;
+				case Header.CREDIT:
+					StreamCredit credit = (StreamCredit) command;
+					ResponseSink responseSink = channel.attr(RESPONSE_STREAMS_KEY).get().sinks.get(credit.getId());
+					if (responseSink != null) {
+						responseSink.addCredits(credit.credits);
+					}
+					break;
 				default: throw new NetworkException("UnKnown type: " + command.getHeader().getType());
 			}
 		}
@@ -544,9 +1399,27 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 		public void channelInactive(ChannelHandlerContext ctx) throws Exception {
 			super.channelInactive(ctx);
 			logger.debug("Channel inactive, Channel: {}", ctx.channel());
+			signalWritabilityWaiters(ctx.channel());
+			ChannelRequestStreams requestStreams = ctx.channel().attr(REQUEST_STREAMS_KEY).get();
+			if (requestStreams != null) {
+				requestStreams.abortAll();
+			}
+			ChannelResponseStreams responseStreams = ctx.channel().attr(RESPONSE_STREAMS_KEY).get();
+			if (responseStreams != null) {
+				responseStreams.closeAll();
+			}
 			publishChannelEvent(ctx.channel(), ChannelEvent.EventType.CLOSE);
 		}
 
+		@Override
+		public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+			super.channelWritabilityChanged(ctx);
+			logger.debug("Channel writability changed, Channel: {}, writable: {}",
+					ctx.channel(), ctx.channel().isWritable());
+			signalWritabilityWaiters(ctx.channel());
+			publishChannelEvent(ctx.channel(), ChannelEvent.EventType.WRITABILITY_CHANGED);
+		}
+
 		@Override
 		public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
 			super.userEventTriggered(ctx, evt);
@@ -573,6 +1446,9 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 
 		@Override
 		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+			if (cause instanceof DecoderException) {
+				networkMetrics.decodeFailed(cause);
+			}
 			logger.error(ctx.channel() + " exception caught", cause);
 			respondAllChannelPromise(ctx.channel(), cause);
 			publishChannelEvent(ctx.channel(), ChannelEvent.EventType.EXCEPTION);
@@ -585,19 +1461,111 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 
 	/**
 	 * 命令编码器
+	 *
+	 * 命令提供了零拷贝命令体时，输出长度与命令头的ByteBuf和命令体组合（ByteBuf组合为CompositeByteBuf，
+	 * FileRegion单独写出），命令体不做拷贝；否则将整个命令编码到一个ByteBuf中
 	 */
-	protected class Encoder extends MessageToByteEncoder<Command> {
+	protected class Encoder extends MessageToMessageEncoder<Command> {
 
 		@Override
-		protected void encode(ChannelHandlerContext ctx, Command command,
-							  ByteBuf out) throws Exception {
-			command.encode(out);//编码命令
+		protected void encode(ChannelHandlerContext ctx, Command command, List<Object> out) throws Exception {
+			Object body = command.bodyContent();
+			if (body == null) {
+				ByteBuf byteBuf = command.allocateBuffer(ctx, true);
+				int headLength;
+				try {
+					headLength = command.encodeFrame(byteBuf);//编码命令
+				} catch (Exception e) {
+					byteBuf.release();
+					throw e;
+				}
+				out.add(compress(ctx, command, byteBuf, headLength));
+			} else {
+				encodeZeroCopy(ctx, command, body, out);
+			}
 		}
 
-		@Override
-		protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Command command,
-										 boolean preferDirect) throws Exception {
-			return command.allocateBuffer(ctx, preferDirect);
+		/**
+		 * 压缩命令体，压缩后帧结构为：长度、命令头（首字节标记压缩算法）、4字节原始命令体长度、压缩后的命令体
+		 *
+		 * @param ctx ctx
+		 * @param command 命令
+		 * @param frame 已编码的完整帧，压缩后释放
+		 * @param headLength 帧中长度与命令头的字节数
+		 * @return 压缩后的帧，不需要压缩或者压缩无收益时返回原帧
+		 */
+		private ByteBuf compress(ChannelHandlerContext ctx, Command command, ByteBuf frame,
+								 int headLength) throws Exception {
+			Compression compression = command.compression();
+			if (compression == null) {
+				compression = NetService.this.compression;
+			}
+			int bodyLength = frame.readableBytes() - headLength;
+			if (compression == Compression.NONE || bodyLength < compressionThreshold) {
+				return frame;
+			}
+
+			ByteBuf compressed = compression.allocate(ctx.alloc(), headLength + 4 + (bodyLength >>> 1),
+					Command.MAX_FRAME_LENGTH);
+			try {
+				compressed.writeBytes(frame, frame.readerIndex(), headLength);
+				compressed.writeInt(bodyLength);
+				compression.compress(frame.slice(frame.readerIndex() + headLength, bodyLength), compressed);
+				if (compressed.readableBytes() >= frame.readableBytes()) {
+					//压缩无收益，发送原帧
+					compressed.release();
+					return frame;
+				}
+				int typeIndex = compressed.readerIndex() + Command.LENGTH_FIELD_LENGTH;
+				compressed.setByte(typeIndex,
+						compressed.getByte(typeIndex) | compression.id << Header.COMPRESSION_SHIFT);
+				compressed.setMedium(compressed.readerIndex(), compressed.readableBytes());
+			} catch (Exception e) {
+				compressed.release();
+				frame.release();
+				throw e;
+			}
+			frame.release();
+			return compressed;
+		}
+
+		private void encodeZeroCopy(ChannelHandlerContext ctx, Command command, Object body,
+									List<Object> out) throws Exception {
+			long bodyLength;
+			if (body instanceof ByteBuf) {
+				bodyLength = ((ByteBuf) body).readableBytes();
+			} else if (body instanceof FileRegion) {
+				bodyLength = ((FileRegion) body).count();
+			} else {
+				ReferenceCountUtil.release(body);
+				throw new EncoderException("Unsupported body content: " + body.getClass());
+			}
+
+			ByteBuf head = ctx.alloc().ioBuffer(Command.LENGTH_FIELD_LENGTH + command.header.getEstimatedSize());
+			try {
+				command.validate();
+				head.writeMedium(0);//空出长度位
+				command.encodeHead(head);
+
+				long frameLength = head.readableBytes() + bodyLength;
+				if (frameLength > Command.MAX_FRAME_LENGTH) {
+					throw new EncoderException("Frame length " + frameLength + " > " + Command.MAX_FRAME_LENGTH);
+				}
+				head.setMedium(0, (int) frameLength);
+			} catch (Exception e) {
+				head.release();
+				ReferenceCountUtil.release(body);
+				throw e;
+			}
+
+			if (body instanceof ByteBuf) {
+				CompositeByteBuf frame = ctx.alloc().compositeBuffer(2);
+				frame.addComponents(true, head, (ByteBuf) body);
+				out.add(frame);
+			} else {
+				out.add(head);
+				out.add(body);
+			}
 		}
 	}
 
@@ -621,11 +1589,50 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 				return null;
 			}
 
-			Header header = new Header();
+			//只有普通请求在处理完成后回收，响应、流式数据块等不会回收，命令头不从对象池获取
+			int first = frame.getByte(frame.readerIndex());
+			boolean pooled = recycleCommands && (first & Header.TYPE_MASK) == Header.REQUEST &&
+					(first & (Header.STREAM_CHUNK | Header.STREAM_LAST)) == 0;
+			Header header = pooled ? Header.newInstance() : new Header();
 			header.decode(frame);//解码命令头
 
-			Command command = commandFactory.createByHeader(header);
-			command.decode(frame);//解码命令体
+			Command command;
+			if (header.getType() == Header.REQUEST && header.isStreamChunk()) {
+				//流式请求数据块直接引用接收缓冲，处理后释放
+				command = new StreamChunk(header);
+			} else if (header.getType() == Header.CREDIT) {
+				command = new StreamCredit(header);
+			} else if (header.isLastChunk()) {
+				command = new StreamEnd(header);
+			} else {
+				command = commandFactory.createByHeader(header);
+			}
+			if (command == null) {
+				int commandType = header.getCommandType();
+				header.recycle();
+				throw new DecoderException("Unknown command type: " + commandType);
+			}
+			Compression compression = header.getCompression();
+			if (compression == Compression.NONE) {
+				command.decode(frame);//解码命令体
+			} else {
+				//解压到池化缓冲后解码命令体
+				int bodyLength = frame.readInt();
+				if (bodyLength < 0 || bodyLength > Command.MAX_FRAME_LENGTH) {
+					throw new DecoderException("Invalid uncompressed body length: " + bodyLength);
+				}
+				ByteBuf body = compression.allocate(ctx.alloc(), bodyLength, bodyLength);
+				try {
+					compression.decompress(frame, body);
+					if (body.readableBytes() != bodyLength) {
+						throw new DecoderException("Uncompressed body length " + body.readableBytes() +
+								" != " + bodyLength);
+					}
+					command.decode(body);
+				} finally {
+					body.release();
+				}
+			}
 			return command;
 		}
 
@@ -636,6 +1643,29 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 		}
 	}
 
+	/**
+	 * 设置超时时间轮（服务线程）的线程工厂，需在启动前设置
+	 *
+	 * @param threadFactory 线程工厂
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * 检查当前线程是否服务线程（超时时间轮线程）
+	 */
+	public boolean currentInThreading() {
+		return isServiceThread(Thread.currentThread());
+	}
+
+	/**
+	 * 检查给定线程是否服务线程（超时时间轮线程）
+	 */
+	public boolean isServiceThread(Thread thread) {
+		return thread != null && thread == timeoutThread;
+	}
+
 	public int getConnectTimeout() {
 		return connectTimeout;
 	}
@@ -668,6 +1698,62 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 		this.selectors = selectors;
 	}
 
+	public boolean isUseEPoll() {
+		return useEPoll;
+	}
+
+	public void setUseEPoll(boolean useEPoll) {
+		this.useEPoll = useEPoll;
+	}
+
+	public boolean isEpollEdgeTriggered() {
+		return epollEdgeTriggered;
+	}
+
+	public void setEpollEdgeTriggered(boolean epollEdgeTriggered) {
+		this.epollEdgeTriggered = epollEdgeTriggered;
+	}
+
+	public boolean isTcpQuickAck() {
+		return tcpQuickAck;
+	}
+
+	public void setTcpQuickAck(boolean tcpQuickAck) {
+		this.tcpQuickAck = tcpQuickAck;
+	}
+
+	public boolean isPooledAllocator() {
+		return pooledAllocator;
+	}
+
+	public void setPooledAllocator(boolean pooledAllocator) {
+		this.pooledAllocator = pooledAllocator;
+	}
+
+	public boolean isPreferDirect() {
+		return preferDirect;
+	}
+
+	public void setPreferDirect(boolean preferDirect) {
+		this.preferDirect = preferDirect;
+	}
+
+	public int getWriteBufferLowWaterMark() {
+		return writeBufferLowWaterMark;
+	}
+
+	public void setWriteBufferLowWaterMark(int writeBufferLowWaterMark) {
+		this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+	}
+
+	public int getWriteBufferHighWaterMark() {
+		return writeBufferHighWaterMark;
+	}
+
+	public void setWriteBufferHighWaterMark(int writeBufferHighWaterMark) {
+		this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+	}
+
 	public int getRequestTimeout() {
 		return requestTimeout;
 	}
@@ -708,6 +1794,118 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 		this.channelAllTimeout = channelAllTimeout;
 	}
 
+	public int getFlushConsolidationLimit() {
+		return flushConsolidationLimit;
+	}
+
+	public void setFlushConsolidationLimit(int flushConsolidationLimit) {
+		this.flushConsolidationLimit = flushConsolidationLimit;
+	}
+
+	public boolean isFlushConsolidateWhenNoReadInProgress() {
+		return flushConsolidateWhenNoReadInProgress;
+	}
+
+	public void setFlushConsolidateWhenNoReadInProgress(boolean flushConsolidateWhenNoReadInProgress) {
+		this.flushConsolidateWhenNoReadInProgress = flushConsolidateWhenNoReadInProgress;
+	}
+
+	public boolean isRecycleCommands() {
+		return recycleCommands;
+	}
+
+	public void setRecycleCommands(boolean recycleCommands) {
+		this.recycleCommands = recycleCommands;
+	}
+
+	public UnwritableSendMode getUnwritableSendMode() {
+		return unwritableSendMode;
+	}
+
+	public void setUnwritableSendMode(UnwritableSendMode unwritableSendMode) {
+		this.unwritableSendMode = Objects.requireNonNull(unwritableSendMode);
+	}
+
+	public int getUnwritableWaitTimeout() {
+		return unwritableWaitTimeout;
+	}
+
+	public void setUnwritableWaitTimeout(int unwritableWaitTimeout) {
+		this.unwritableWaitTimeout = unwritableWaitTimeout;
+	}
+
+	public RequestLimiter getRequestLimiter() {
+		return requestLimiter;
+	}
+
+	public void setRequestLimiter(RequestLimiter requestLimiter) {
+		this.requestLimiter = requestLimiter;
+	}
+
+	public NetworkMetrics getNetworkMetrics() {
+		return networkMetrics;
+	}
+
+	public void setNetworkMetrics(NetworkMetrics networkMetrics) {
+		this.networkMetrics = networkMetrics;
+	}
+
+	public boolean isJmxEnabled() {
+		return jmxEnabled;
+	}
+
+	public void setJmxEnabled(boolean jmxEnabled) {
+		this.jmxEnabled = jmxEnabled;
+	}
+
+	public Compression getCompression() {
+		return compression;
+	}
+
+	public void setCompression(Compression compression) {
+		this.compression = Objects.requireNonNull(compression);
+	}
+
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	public boolean isStreamEnabled() {
+		return streamEnabled;
+	}
+
+	public void setStreamEnabled(boolean streamEnabled) {
+		this.streamEnabled = streamEnabled;
+	}
+
+	public int getMaxPendingStreamBytes() {
+		return maxPendingStreamBytes;
+	}
+
+	public void setMaxPendingStreamBytes(int maxPendingStreamBytes) {
+		this.maxPendingStreamBytes = maxPendingStreamBytes;
+	}
+
+	public int getRequestExpireTime() {
+		return requestExpireTime;
+	}
+
+	public void setRequestExpireTime(int requestExpireTime) {
+		this.requestExpireTime = requestExpireTime;
+	}
+
+	public boolean isPropagateDeadline() {
+		return propagateDeadline;
+	}
+
+	public void setPropagateDeadline(boolean propagateDeadline) {
+		this.propagateDeadline = propagateDeadline;
+	}
+
 	public int getRequestTimeoutDetectInterval() {
 		return requestTimeoutDetectInterval;
 	}
@@ -716,6 +1914,14 @@ public class NetService extends ThreadService implements EventSource<ChannelEven
 		this.requestTimeoutDetectInterval = requestTimeoutDetectInterval;
 	}
 
+	public int getRequestTimeoutWheelSize() {
+		return requestTimeoutWheelSize;
+	}
+
+	public void setRequestTimeoutWheelSize(int requestTimeoutWheelSize) {
+		this.requestTimeoutWheelSize = requestTimeoutWheelSize;
+	}
+
 	public int getMaxProcessingRequests() {
 		return maxProcessingRequests;
 	}
@@ -23,6 +23,36 @@ public class NetworkException extends RuntimeException {
 	public static class TimeoutException extends NetworkException {
 	}
 
+	/**
+	 * 请求排队过久（超过过期时间）未处理
+	 */
+	public static class RequestExpiredException extends TimeoutException {
+	}
+
+	/**
+	 * 请求被取消（例如对冲请求中落后的请求）
+	 */
+	public static class RequestCancelledException extends NetworkException {
+	}
+
 	public static class TooMuchRequestException extends NetworkException {
 	}
+
+	/**
+	 * 连接并发请求数超过限制
+	 */
+	public static class ChannelRequestLimitException extends TooMuchRequestException {
+	}
+
+	/**
+	 * 请求类型并发请求数超过限制
+	 */
+	public static class TypeRequestLimitException extends TooMuchRequestException {
+	}
+
+	public static class ChannelUnwritableException extends NetworkException {
+	}
+
+	public static class NoAvailableChannelException extends NetworkException {
+	}
 }
@@ -0,0 +1,68 @@
+package pers.zyc.tools.network;
+
+import pers.zyc.tools.utils.spi.SpiPlugin;
+
+/**
+ * 网络服务指标采集，可通过{@link NetService#setNetworkMetrics(NetworkMetrics)}设置，
+ * 或者通过SPI（META-INF/services）提供实现，都没有时使用{@link DefaultNetworkMetrics}
+ *
+ * 所有方法都在请求发送、IO线程等热点路径上调用，实现需线程安全并且不能阻塞
+ *
+ * @author zhangyancheng
+ */
+public interface NetworkMetrics extends SpiPlugin {
+
+	/**
+	 * 请求开始（获取到请求Promise）
+	 *
+	 * @param request 请求
+	 */
+	void requestStarted(Request request);
+
+	/**
+	 * 请求结束（收到响应、单向请求发送完成、超时或者失败）
+	 *
+	 * @param request 请求
+	 * @param rttNanos 请求开始到结束的时间（ns）
+	 * @param cause 异常，为null表示成功
+	 */
+	void requestCompleted(Request request, long rttNanos, Throwable cause);
+
+	/**
+	 * 命令发送失败
+	 *
+	 * @param command 命令
+	 * @param cause 异常
+	 */
+	void sendFailed(Command command, Throwable cause);
+
+	/**
+	 * 解码失败
+	 *
+	 * @param cause 异常
+	 */
+	void decodeFailed(Throwable cause);
+
+	/**
+	 * 连接读入数据
+	 *
+	 * @param bytes 字节数
+	 */
+	void bytesRead(long bytes);
+
+	/**
+	 * 连接写出数据（写入出站缓冲）
+	 *
+	 * @param bytes 字节数
+	 */
+	void bytesWritten(long bytes);
+
+	/**
+	 * 服务端请求处理完成
+	 *
+	 * @param request 请求
+	 * @param queueNanos 在执行器中排队等待的时间（ns）
+	 * @param handleNanos 请求处理器执行的时间（ns）
+	 */
+	void requestHandled(Request request, long queueNanos, long handleNanos);
+}
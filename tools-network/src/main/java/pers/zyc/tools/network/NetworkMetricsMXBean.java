@@ -0,0 +1,82 @@
+package pers.zyc.tools.network;
+
+/**
+ * 网络服务指标MBean，时间单位为微秒
+ *
+ * @author zhangyancheng
+ * @see NetService#setJmxEnabled(boolean)
+ */
+public interface NetworkMetricsMXBean {
+
+	/**
+	 * @return 未结束的请求数
+	 */
+	long getInFlightRequests();
+
+	/**
+	 * @return 已结束的请求数
+	 */
+	long getCompletedRequests();
+
+	/**
+	 * @return 超时的请求数
+	 */
+	long getTimeoutRequests();
+
+	/**
+	 * @return 失败（非超时）的请求数
+	 */
+	long getFailedRequests();
+
+	/**
+	 * @return 发送失败的命令数
+	 */
+	long getSendFailures();
+
+	/**
+	 * @return 解码失败次数
+	 */
+	long getDecodeFailures();
+
+	/**
+	 * @return 读入字节数
+	 */
+	long getBytesRead();
+
+	/**
+	 * @return 写出字节数
+	 */
+	long getBytesWritten();
+
+	/**
+	 * @return 有记录的命令类型
+	 */
+	int[] getCommandTypes();
+
+	/**
+	 * 请求往返时间（客户端，只包含成功的请求）
+	 *
+	 * @param commandType 命令类型
+	 * @param percentile 百分位（0~100）
+	 * @return 百分位时间（μs），无记录时为0
+	 */
+	long getRoundTripTime(int commandType, double percentile);
+
+	/**
+	 * 请求处理时间（服务端）
+	 *
+	 * @param commandType 命令类型
+	 * @param percentile 百分位（0~100）
+	 * @return 百分位时间（μs），无记录时为0
+	 */
+	long getHandleTime(int commandType, double percentile);
+
+	/**
+	 * 请求在执行器中排队的时间（服务端）
+	 *
+	 * @param commandType 命令类型
+	 * @param percentile 百分位（0~100）
+	 * @return 百分位时间（μs），无记录时为0
+	 */
+	long getQueueWaitTime(int commandType, double percentile);
+}
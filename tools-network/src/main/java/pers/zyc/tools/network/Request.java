@@ -58,6 +58,14 @@ public abstract class Request extends Command {
 		super(header);
 	}
 
+	/**
+	 * 对象池中的请求使用，取出后需设置命令头
+	 *
+	 * @see #setHeader(Header)
+	 */
+	protected Request() {
+	}
+
 	public Channel getChannel() {
 		return channel;
 	}
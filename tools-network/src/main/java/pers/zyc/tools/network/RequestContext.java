@@ -0,0 +1,77 @@
+package pers.zyc.tools.network;
+
+import pers.zyc.tools.utils.SystemMillis;
+
+/**
+ * 请求处理上下文，请求处理器在处理线程中获取当前请求的截止时间
+ *
+ * 处理请求期间通过{@link NetService}发出的下游请求继承此截止时间（超时时间不超过剩余时间），
+ * 上游请求方已超时后下游不再继续处理，避免过载时请求放大
+ *
+ * @author zhangyancheng
+ */
+public final class RequestContext {
+
+	/**
+	 * 当前线程正在处理的请求的截止时间
+	 */
+	private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+	private RequestContext() {
+	}
+
+	/**
+	 * @return 当前线程正在处理的请求的截止时间（本地时间ms），为0表示无截止时间
+	 */
+	public static long getDeadline() {
+		Long deadline = DEADLINE.get();
+		return deadline == null ? 0 : deadline;
+	}
+
+	/**
+	 * @return 当前线程正在处理的请求的剩余时间（ms），无截止时间时为Long.MAX_VALUE
+	 */
+	public static long getRemainingTime() {
+		long deadline = getDeadline();
+		return deadline > 0 ? deadline - SystemMillis.current() : Long.MAX_VALUE;
+	}
+
+	/**
+	 * 开始处理请求，设置当前线程的截止时间
+	 *
+	 * @param request 请求
+	 * @return 之前的截止时间，处理结束后通过{@link #restore(Long)}恢复
+	 */
+	static Long enter(Request request) {
+		return enter(request.getHeader().getDeadline());
+	}
+
+	/**
+	 * 开始处理请求（例如一批请求），设置当前线程的截止时间
+	 *
+	 * @param deadline 截止时间（本地时间ms），为0表示无截止时间
+	 * @return 之前的截止时间，处理结束后通过{@link #restore(Long)}恢复
+	 */
+	static Long enter(long deadline) {
+		Long previous = DEADLINE.get();
+		if (deadline > 0) {
+			DEADLINE.set(deadline);
+		} else if (previous != null) {
+			DEADLINE.remove();
+		}
+		return previous;
+	}
+
+	/**
+	 * 请求处理结束，恢复之前的截止时间（执行器同步执行时可能嵌套）
+	 *
+	 * @param previous 之前的截止时间
+	 */
+	static void restore(Long previous) {
+		if (previous == null) {
+			DEADLINE.remove();
+		} else {
+			DEADLINE.set(previous);
+		}
+	}
+}
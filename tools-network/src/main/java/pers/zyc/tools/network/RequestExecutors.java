@@ -0,0 +1,126 @@
+package pers.zyc.tools.network;
+
+import pers.zyc.tools.utils.GeneralThreadFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 请求处理执行器，通过{@link BaseRequestHandler#setExecutor(java.util.concurrent.Executor)}
+ * 或者{@link DefaultRequestHandlerFactory#register(int, BaseRequestHandler, java.util.concurrent.Executor)}
+ * 为请求处理器选择执行策略，避免阻塞的请求处理在IO线程中执行
+ *
+ * 执行器由使用方创建和关闭，不随服务停止
+ *
+ * @author zhangyancheng
+ */
+public final class RequestExecutors {
+
+	/**
+	 * JDK21+创建虚拟线程执行器的方法，不支持时为null
+	 */
+	private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		Method method;
+		try {
+			method = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			method = null;
+		}
+		NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = method;
+	}
+
+	private RequestExecutors() {
+	}
+
+	/**
+	 * 创建有界线程池，一般每个请求类型一个，队列满时拒绝（响应{@link NetworkException.TooMuchRequestException}）
+	 *
+	 * @param name 线程名前缀
+	 * @param threads 线程数
+	 * @param queueCapacity 队列容量
+	 * @return 有界线程池
+	 */
+	public static BoundedExecutor newBoundedPool(String name, int threads, int queueCapacity) {
+		return new BoundedExecutor(name, threads, queueCapacity);
+	}
+
+	/**
+	 * 创建工作窃取执行器（FIFO模式的ForkJoinPool），适合大量短小的请求处理
+	 *
+	 * @param name 线程名前缀
+	 * @param parallelism 并行度
+	 * @return 工作窃取执行器
+	 */
+	public static ExecutorService newWorkStealingPool(final String name, int parallelism) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		return new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+			@Override
+			public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName(name + threadNumber.incrementAndGet());
+				return thread;
+			}
+		}, null, true);
+	}
+
+	/**
+	 * @return 当前JDK是否支持虚拟线程（JDK21+）
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+	}
+
+	/**
+	 * 创建每个请求一个虚拟线程的执行器（JDK21+），适合阻塞型的请求处理
+	 *
+	 * @return 虚拟线程执行器
+	 * @throws UnsupportedOperationException 当前JDK不支持虚拟线程
+	 */
+	public static ExecutorService newVirtualThreadPerRequestExecutor() {
+		if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+			throw new UnsupportedOperationException("Virtual thread requires JDK 21+");
+		}
+		try {
+			return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+		} catch (Exception e) {
+			throw new UnsupportedOperationException("Create virtual thread executor failed", e);
+		}
+	}
+
+	/**
+	 * 有界线程池，队列满时抛出{@link java.util.concurrent.RejectedExecutionException}
+	 */
+	public static class BoundedExecutor extends ThreadPoolExecutor {
+
+		private final int queueCapacity;
+
+		BoundedExecutor(String name, int threads, int queueCapacity) {
+			super(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueCapacity),
+					new GeneralThreadFactory(name.endsWith("-") ? name : name + "-"));
+			this.queueCapacity = queueCapacity;
+		}
+
+		/**
+		 * @return 队列深度（排队等待处理的请求数）
+		 */
+		public int getQueueDepth() {
+			return getQueue().size();
+		}
+
+		/**
+		 * @return 队列容量
+		 */
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package pers.zyc.tools.network;
+
+/**
+ * 请求准入控制，在全局请求许可（{@link NetService#setMaxProcessingRequests(int)}）之外按连接、请求类型等限制并发请求
+ *
+ * 每个成功获取许可的请求在结束（响应、超时、失败）时都会且仅会释放一次
+ *
+ * @author zhangyancheng
+ */
+public interface RequestLimiter {
+
+	/**
+	 * 请求发送前获取许可
+	 *
+	 * @param request 请求（已设置连接）
+	 * @throws NetworkException.TooMuchRequestException 许可不足，拒绝发送
+	 */
+	void acquire(Request request);
+
+	/**
+	 * 请求结束时释放许可
+	 *
+	 * @param request 请求
+	 * @param rttNanos 请求从获取许可到结束的耗时（ns），单向请求为写出耗时
+	 * @param dropped 请求是否超时或者失败（未收到响应）
+	 */
+	void release(Request request, long rttNanos, boolean dropped);
+}
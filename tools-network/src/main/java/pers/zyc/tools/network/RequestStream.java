@@ -0,0 +1,38 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 接收端的流式请求，代表一个正在接收的{@link StreamRequest}，同一请求的所有数据块对应同一个实例
+ *
+ * 由第一个数据块的命令头创建，只有命令头，请求内容通过{@link StreamRequestHandler#onChunk(RequestStream, ByteBuf)}逐块处理
+ *
+ * @author zhangyancheng
+ */
+public class RequestStream extends Request {
+
+	/**
+	 * 处理器附加的处理状态
+	 */
+	private Object attachment;
+
+	RequestStream(Header header) {
+		super(header);
+	}
+
+	public Object getAttachment() {
+		return attachment;
+	}
+
+	public void setAttachment(Object attachment) {
+		this.attachment = attachment;
+	}
+
+	@Override
+	protected void encodeBody(ByteBuf byteBuf) throws Exception {
+	}
+
+	@Override
+	protected void decodeBody(ByteBuf byteBuf) throws Exception {
+	}
+}
@@ -34,4 +34,12 @@ public abstract class Response extends Command {
 	public Response(Header header) {
 		super(header);
 	}
+
+	/**
+	 * 对象池中的响应使用，取出后需设置命令头
+	 *
+	 * @see #setHeader(Header)
+	 */
+	protected Response() {
+	}
 }
@@ -0,0 +1,104 @@
+package pers.zyc.tools.network;
+
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.Promise;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 异步响应聚合工具，配合{@link NetService#sendAsync(Request, Promise)}使用
+ *
+ * 聚合过程只在各请求完成的线程中计数，不占用等待线程
+ *
+ * @author zhangyancheng
+ */
+public final class ResponseFutures {
+
+	private ResponseFutures() {
+	}
+
+	/**
+	 * 所有请求都成功时完成，任一请求失败则以该异常失败
+	 *
+	 * @param futures 响应Future集合
+	 * @param promise 聚合结果Promise
+	 * @return 聚合结果Future，成功时结果为按完成顺序排列的全部响应
+	 */
+	public static Future<List<Response>> allOf(Collection<? extends Future<Response>> futures,
+											   Promise<List<Response>> promise) {
+		return quorum(futures, futures.size(), promise);
+	}
+
+	/**
+	 * 成功响应数达到法定数时完成，失败数使得法定数不可能达到时以最后一个异常失败
+	 *
+	 * @param futures 响应Future集合
+	 * @param quorum 法定成功数
+	 * @param promise 聚合结果Promise
+	 * @return 聚合结果Future，成功时结果为按完成顺序排列的前quorum个响应
+	 */
+	public static Future<List<Response>> quorum(Collection<? extends Future<Response>> futures, int quorum,
+												Promise<List<Response>> promise) {
+		Objects.requireNonNull(promise);
+		if (quorum < 0 || quorum > futures.size()) {
+			throw new IllegalArgumentException("quorum " + quorum + " out of range [0, " + futures.size() + "]");
+		}
+		if (quorum == 0) {
+			promise.trySuccess(new ArrayList<Response>(0));
+			return promise;
+		}
+
+		QuorumListener listener = new QuorumListener(quorum, futures.size() - quorum, promise);
+		for (Future<Response> future : futures) {
+			future.addListener(listener);
+		}
+		return promise;
+	}
+
+	/**
+	 * 法定数计数监听器，所有请求共享一个实例
+	 */
+	private static class QuorumListener implements GenericFutureListener<Future<Response>> {
+
+		final int quorum;
+		final int tolerableFailures;
+		final Promise<List<Response>> promise;
+		final AtomicReferenceArray<Response> responses;
+		final AtomicInteger succeeded = new AtomicInteger();
+		final AtomicInteger stored = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+
+		QuorumListener(int quorum, int tolerableFailures, Promise<List<Response>> promise) {
+			this.quorum = quorum;
+			this.tolerableFailures = tolerableFailures;
+			this.promise = promise;
+			this.responses = new AtomicReferenceArray<>(quorum);
+		}
+
+		@Override
+		public void operationComplete(Future<Response> future) throws Exception {
+			if (future.isSuccess()) {
+				int index = succeeded.getAndIncrement();
+				if (index < quorum) {
+					responses.set(index, future.getNow());
+					//最后一个写入响应的线程完成聚合
+					if (stored.incrementAndGet() == quorum) {
+						List<Response> result = new ArrayList<>(quorum);
+						for (int i = 0; i < quorum; i++) {
+							result.add(responses.get(i));
+						}
+						promise.trySuccess(result);
+					}
+				}
+			} else if (failed.incrementAndGet() == tolerableFailures + 1) {
+				promise.tryFailure(future.cause());
+			}
+		}
+	}
+}
@@ -1,12 +1,36 @@
 package pers.zyc.tools.network;
 
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.Promise;
 import pers.zyc.tools.utils.SystemMillis;
 import pers.zyc.tools.utils.event.Multicaster;
 
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 /**
+ * 响应Promise，同时作为超时时间轮任务，到期时由时间轮线程结束请求
+ *
+ * 完成状态由result字段的CAS决定，没有等待线程和监听器时完成请求不需要加锁，
+ * 只有一个监听器时直接回调，多于一个监听器时才创建广播器
+ *
  * @author zhangyancheng
  */
-class ResponsePromise implements ResponseFuture {
+class ResponsePromise implements ResponseFuture, TimerTask {
+
+	private static final AtomicReferenceFieldUpdater<ResponsePromise, Object> RESULT_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(ResponsePromise.class, Object.class, "result");
+
+	/**
+	 * 请求成功但无响应（单向请求）时的结果
+	 */
+	private static final Object NULL_RESPONSE = new Object();
+
+	/**
+	 * 发送请求的服务
+	 */
+	private final NetService netService;
 
 	/**
 	 * 请求
@@ -19,60 +43,95 @@ class ResponsePromise implements ResponseFuture {
 	private final int requestTimeout;
 
 	/**
-	 * 响应最后期限
+	 * 请求开始时间（ns），用于计算请求RTT
+	 */
+	final long startNanos = System.nanoTime();
+
+	/**
+	 * 超时时间轮中的超时任务句柄，请求结束后取消
 	 */
-	final long deadline;
+	volatile Timeout timeout;
 
 	/**
-	 * 响应广播器
+	 * 异步发送时调用方传入的Promise，请求结束时直接完成，为null表示没有
 	 */
-	private final Multicaster<ResponseFutureListener> multicaster;
+	private final Promise<Response> bridge;
 
 	/**
-	 * 请求结果（响应或者异常）
+	 * 请求结果（响应或者异常），为null表示未完成
 	 */
-	private Object result;
+	private volatile Object result;
 
 	/**
-	 * 是否完成
+	 * 是否有过等待线程或者监听器，先置位再检查result，与完成时先设置result再检查此标记配合，
+	 * 保证完成线程和等待线程（添加监听器线程）至少有一方能看到另一方
 	 */
-	private volatile boolean done;
+	private volatile boolean watched;
 
 	/**
-	 * 是否发生了异常
+	 * 单个监听器（同步访问）
 	 */
-	private boolean exceptional;
+	private ResponseFutureListener listener;
 
-	ResponsePromise(Request request, int requestTimeout, Multicaster<ResponseFutureListener> multicaster) {
+	/**
+	 * 多于一个监听器时创建的响应广播器（同步访问）
+	 */
+	private Multicaster<ResponseFutureListener> multicaster;
+
+	/**
+	 * 等待结果的线程数（同步访问）
+	 */
+	private int waiters;
+
+	ResponsePromise(NetService netService, Request request, int requestTimeout, Promise<Response> bridge) {
+		this.netService = netService;
 		this.request = request;
 		this.requestTimeout = requestTimeout;
-		this.deadline = requestTimeout + SystemMillis.current();
-		this.multicaster = multicaster;
+		this.bridge = bridge;
 	}
 
 	@Override
-	public synchronized void addListener(final ResponseFutureListener listener) {
-		if (!done) {
-			multicaster.addListener(listener);
-		} else {
-			//已经完成则给当前监听器通知结果
-			multicaster.getMulticastExecutor().execute(new Runnable() {
-				@Override
-				public void run() {
-					multicast(listener);
+	public void run(Timeout timeout) throws Exception {
+		netService.requestTimeout(this);
+	}
+
+	@Override
+	public void addListener(ResponseFutureListener listener) {
+		Objects.requireNonNull(listener);
+		if (result == null) {
+			synchronized (this) {
+				watched = true;
+				if (result == null) {
+					if (this.listener == null && multicaster == null) {
+						this.listener = listener;
+					} else {
+						if (multicaster == null) {
+							multicaster = netService.createResponseMulticaster();
+							multicaster.addListener(this.listener);
+							this.listener = null;
+						}
+						multicaster.addListener(listener);
+					}
+					return;
 				}
-			});
+			}
 		}
+		//已经完成则给当前监听器通知结果
+		netService.notifyResponseListener(this, listener);
 	}
 
 	@Override
 	public synchronized void removeListener(ResponseFutureListener listener) {
-		multicaster.removeListener(listener);
+		if (this.listener == listener) {
+			this.listener = null;
+		} else if (multicaster != null) {
+			multicaster.removeListener(listener);
+		}
 	}
 
 	@Override
 	public boolean isDone() {
-		return done;
+		return result != null;
 	}
 
 	@Override
@@ -86,56 +145,91 @@ class ResponsePromise implements ResponseFuture {
 			throw new IllegalArgumentException("Timeout " + timeout + " <= 0");
 		}
 
-		synchronized (this) {
-			while (!done && timeout > 0) {
-				long now = SystemMillis.current();
-				wait(timeout);
-				timeout -= SystemMillis.current() - now;
+		Object result = this.result;
+		if (result == null) {
+			synchronized (this) {
+				watched = true;
+				waiters++;
+				try {
+					while ((result = this.result) == null && timeout > 0) {
+						long now = SystemMillis.current();
+						wait(timeout);
+						timeout -= SystemMillis.current() - now;
+					}
+				} finally {
+					waiters--;
+				}
+			}
+			if (result == null) {
+				throw new NetworkException.TimeoutException();
 			}
-		}
-
-		if (timeout <= 0) {
-			throw new NetworkException.TimeoutException();
 		}
 
 		if (result instanceof NetworkException) {
 			throw (NetworkException) result;
 		}
-		return (Response) result;
+		return result == NULL_RESPONSE ? null : (Response) result;
 	}
 
 	/**
 	 * 请求结束
 	 *
 	 * @param result 响应或者异常
+	 * @return 是否由本次调用结束了请求（超时线程和响应线程存在并发）
 	 */
-	synchronized boolean response(Object result) {
-		if (done) {
-			//超时线程和响应线程存在并发
-			return false;
+	boolean response(Object result) {
+		if (result == null) {
+			result = NULL_RESPONSE;
+		} else if (result instanceof Throwable && !(result instanceof NetworkException)) {
+			result = new NetworkException((Throwable) result);
 		}
-		done = true;
 
-		exceptional = result instanceof Throwable;
-		if (exceptional && !(result instanceof NetworkException)) {
-			result = new NetworkException((Throwable) result);
+		if (!RESULT_UPDATER.compareAndSet(this, null, result)) {
+			return false;
 		}
-		this.result = result;
 
-		//给所有添加的监听器广播结果
-		if (multicaster.hasListeners()) {
-			multicast(multicaster.listeners);
+		if (bridge != null) {
+			if (result instanceof NetworkException) {
+				bridge.tryFailure((NetworkException) result);
+			} else {
+				bridge.trySuccess(result == NULL_RESPONSE ? null : (Response) result);
+			}
 		}
 
-		notifyAll();
+		if (watched) {
+			ResponseFutureListener listener;
+			Multicaster<ResponseFutureListener> multicaster;
+			synchronized (this) {
+				if (waiters > 0) {
+					notifyAll();
+				}
+				listener = this.listener;
+				multicaster = this.multicaster;
+				this.listener = null;
+				this.multicaster = null;
+			}
+
+			//给所有添加的监听器广播结果
+			if (listener != null) {
+				netService.notifyResponseListener(this, listener);
+			} else if (multicaster != null && multicaster.hasListeners()) {
+				notifyListener(multicaster.listeners);
+			}
+		}
 		return true;
 	}
 
-	private void multicast(ResponseFutureListener listener) {
-		if (exceptional) {
+	/**
+	 * 给监听器通知结果，只能在完成后调用
+	 *
+	 * @param listener 监听器
+	 */
+	void notifyListener(ResponseFutureListener listener) {
+		Object result = this.result;
+		if (result instanceof NetworkException) {
 			listener.exceptionCaught(request, (NetworkException) result);
 		} else {
-			listener.responseReceived(request, (Response) result);
+			listener.responseReceived(request, result == NULL_RESPONSE ? null : (Response) result);
 		}
 	}
 }
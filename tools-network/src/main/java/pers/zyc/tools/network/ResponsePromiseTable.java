@@ -0,0 +1,76 @@
+package pers.zyc.tools.network;
+
+import io.netty.util.collection.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 连接的请求Promise表，以请求id为键关联响应
+ *
+ * 使用int键的开放地址哈希表，写入和删除时没有装箱和节点分配，
+ * 非线程安全，只能在连接所属的IO线程中修改（超时线程、连接事件线程需提交到IO线程执行），{@link #size()}可在任意线程读取
+ *
+ * @author zhangyancheng
+ */
+final class ResponsePromiseTable {
+
+	private final IntObjectHashMap<ResponsePromise> promises = new IntObjectHashMap<>();
+
+	/**
+	 * 等待响应的请求数，供其他线程读取
+	 */
+	private volatile int size;
+
+	void put(ResponsePromise promise) {
+		promises.put(promise.request.getId(), promise);
+		size = promises.size();
+	}
+
+	/**
+	 * 按请求id删除
+	 *
+	 * @param requestId 请求id
+	 * @return 删除的Promise，不存在返回null
+	 */
+	ResponsePromise remove(int requestId) {
+		ResponsePromise promise = promises.remove(requestId);
+		if (promise != null) {
+			size = promises.size();
+		}
+		return promise;
+	}
+
+	/**
+	 * 只在表中仍为给定的Promise时删除（请求id可能已被后续请求复用）
+	 *
+	 * @param promise Promise
+	 */
+	void remove(ResponsePromise promise) {
+		int requestId = promise.request.getId();
+		if (promises.get(requestId) == promise) {
+			promises.remove(requestId);
+			size = promises.size();
+		}
+	}
+
+	/**
+	 * 删除全部
+	 *
+	 * @return 删除的全部Promise
+	 */
+	List<ResponsePromise> removeAll() {
+		if (promises.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<ResponsePromise> removed = new ArrayList<>(promises.values());
+		promises.clear();
+		size = 0;
+		return removed;
+	}
+
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,107 @@
+package pers.zyc.tools.network;
+
+import pers.zyc.tools.utils.SystemMillis;
+
+/**
+ * 流式响应的生产端，{@link StreamResponseHandler}通过此对象逐个发送响应
+ *
+ * 每发送一个响应消耗一个消费端授予的许可，许可不足时阻塞等待（不会在消费端未处理时堆积响应）
+ *
+ * @author zhangyancheng
+ */
+public class ResponseSink {
+
+	private final NetService netService;
+
+	/**
+	 * 请求
+	 */
+	final Request request;
+
+	/**
+	 * 可发送的响应数（同步访问）
+	 */
+	private int credits;
+
+	/**
+	 * 是否已被消费端取消或者连接关闭（同步访问）
+	 */
+	private boolean cancelled;
+
+	ResponseSink(NetService netService, Request request) {
+		this.netService = netService;
+		this.request = request;
+	}
+
+	/**
+	 * 发送响应，等待许可的时间为默认请求超时时间
+	 *
+	 * @param response 响应（id必须为请求id）
+	 * @throws InterruptedException 等待许可过程中线程被中断
+	 * @throws NetworkException.TimeoutException 等待许可超时
+	 * @throws NetworkException 消费端已取消
+	 */
+	public void send(Response response) throws InterruptedException {
+		send(response, netService.getRequestTimeout());
+	}
+
+	/**
+	 * 发送响应
+	 *
+	 * @param response 响应（id必须为请求id）
+	 * @param timeout 等待许可的时间（ms）
+	 * @throws InterruptedException 等待许可过程中线程被中断
+	 * @throws NetworkException.TimeoutException 等待许可超时
+	 * @throws NetworkException 消费端已取消
+	 */
+	public void send(Response response, long timeout) throws InterruptedException {
+		if (response.getId() != request.getId()) {
+			throw new IllegalArgumentException("Response id " + response.getId() + " != request id " + request.getId());
+		}
+		synchronized (this) {
+			while (credits == 0 && !cancelled && timeout > 0) {
+				long now = SystemMillis.current();
+				wait(timeout);
+				timeout -= SystemMillis.current() - now;
+			}
+			if (cancelled) {
+				throw new NetworkException("Stream cancelled");
+			}
+			if (credits == 0) {
+				throw new NetworkException.TimeoutException();
+			}
+			credits--;
+		}
+		response.getHeader().flags(Header.STREAM_CHUNK);
+		netService.writeResponse(request, response);
+	}
+
+	/**
+	 * @return 消费端是否已取消
+	 */
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * IO线程中调用，收到消费端许可
+	 *
+	 * @param credits 许可数，小于0表示取消
+	 */
+	synchronized void addCredits(int credits) {
+		if (credits < 0) {
+			cancelled = true;
+		} else {
+			this.credits += credits;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * 取消（连接关闭）
+	 */
+	synchronized void cancel() {
+		cancelled = true;
+		notifyAll();
+	}
+}
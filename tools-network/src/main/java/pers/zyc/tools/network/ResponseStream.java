@@ -0,0 +1,225 @@
+package pers.zyc.tools.network;
+
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import pers.zyc.tools.utils.SystemMillis;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式响应，一个请求对应多个响应，由生产端（{@link StreamResponseHandler}）逐个推送，以结束帧结束
+ *
+ * 流量控制基于许可：发送请求时授予窗口大小的许可，生产端每发送一个响应消耗一个许可，
+ * 消费端每消费半个窗口的响应后补充等量许可，未消费的响应不超过窗口大小，两端都不需要缓存完整的结果
+ *
+ * 生产端超过空闲超时时间（发送请求时的请求超时时间）没有推送响应也没有结束时，以超时异常结束并通知生产端取消，
+ * 等待消费的响应未消费完时不计空闲
+ *
+ * 线程安全，一般由单个线程通过{@link #next(long)}迭代消费
+ *
+ * @author zhangyancheng
+ * @see NetService#sendStream(Request, int)
+ */
+public class ResponseStream implements Closeable, TimerTask {
+
+	private final NetService netService;
+
+	/**
+	 * 请求
+	 */
+	final Request request;
+
+	/**
+	 * 消费多少个响应后补充许可
+	 */
+	private final int replenishThreshold;
+
+	/**
+	 * 空闲超时时间（ms）
+	 */
+	private final int idleTimeout;
+
+	/**
+	 * 超时时间轮中的超时任务句柄，结束或者关闭后取消
+	 */
+	volatile Timeout timeout;
+
+	/**
+	 * 最后一次收到或者消费响应的时间（同步访问）
+	 */
+	private long lastActiveTime = SystemMillis.current();
+
+	/**
+	 * 已到达未消费的响应（同步访问）
+	 */
+	private final ArrayDeque<Response> responses = new ArrayDeque<>();
+
+	/**
+	 * 未补充许可的已消费响应数（同步访问）
+	 */
+	private int consumed;
+
+	/**
+	 * 生产端是否已结束（同步访问）
+	 */
+	private boolean ended;
+
+	/**
+	 * 异常结束时的异常（同步访问）
+	 */
+	private NetworkException error;
+
+	/**
+	 * 是否已被消费端关闭（同步访问）
+	 */
+	private boolean closed;
+
+	ResponseStream(NetService netService, Request request, int window, int idleTimeout) {
+		this.netService = netService;
+		this.request = request;
+		this.replenishThreshold = Math.max(1, window >>> 1);
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * 时间轮线程中调用，空闲超时后结束，否则按剩余时间重新计时
+	 */
+	@Override
+	public void run(Timeout timeout) throws Exception {
+		long delay;
+		synchronized (this) {
+			if (ended || closed) {
+				return;
+			}
+			delay = responses.isEmpty() ? lastActiveTime + idleTimeout - SystemMillis.current() : idleTimeout;
+			if (delay <= 0) {
+				ended = true;
+				error = new NetworkException.TimeoutException();
+				notifyAll();
+			}
+		}
+		if (delay > 0) {
+			this.timeout = timeout.timer().newTimeout(this, delay, TimeUnit.MILLISECONDS);
+		} else {
+			netService.cancelResponseStream(this);
+		}
+	}
+
+	/**
+	 * 获取下一个响应，等待时间为默认请求超时时间
+	 *
+	 * @return 响应，为null表示已结束
+	 * @throws InterruptedException 等待过程中线程被中断
+	 * @throws NetworkException.TimeoutException 等待超时（流式响应未结束，可以继续等待）
+	 * @throws NetworkException 生产端异常或者连接关闭
+	 */
+	public Response next() throws InterruptedException {
+		return next(netService.getRequestTimeout());
+	}
+
+	/**
+	 * 获取下一个响应
+	 *
+	 * @param timeout 等待时间（ms）
+	 * @return 响应，为null表示已结束
+	 * @throws InterruptedException 等待过程中线程被中断
+	 * @throws NetworkException.TimeoutException 等待超时（流式响应未结束，可以继续等待）
+	 * @throws NetworkException 生产端异常或者连接关闭
+	 */
+	public Response next(long timeout) throws InterruptedException {
+		Response response;
+		int credits = 0;
+		synchronized (this) {
+			while (responses.isEmpty() && !ended && !closed && timeout > 0) {
+				long now = SystemMillis.current();
+				wait(timeout);
+				timeout -= SystemMillis.current() - now;
+			}
+			response = responses.poll();
+			if (response == null) {
+				if (error != null) {
+					throw error;
+				}
+				if (ended || closed) {
+					return null;
+				}
+				throw new NetworkException.TimeoutException();
+			}
+			lastActiveTime = SystemMillis.current();
+			if (++consumed >= replenishThreshold && !ended) {
+				credits = consumed;
+				consumed = 0;
+			}
+		}
+		if (credits > 0) {
+			netService.sendStreamCredit(this, credits);
+		}
+		return response;
+	}
+
+	/**
+	 * @return 是否已结束（生产端已结束并且所有响应都已消费，或者已关闭）
+	 */
+	public synchronized boolean isDone() {
+		return closed || ended && responses.isEmpty();
+	}
+
+	/**
+	 * 关闭流式响应，未结束时通知生产端取消
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			responses.clear();
+			notifyAll();
+			cancelTimeout();
+			if (ended) {
+				return;
+			}
+		}
+		netService.cancelResponseStream(this);
+	}
+
+	/**
+	 * IO线程中调用，收到响应
+	 */
+	synchronized void onResponse(Response response) {
+		if (!closed && !ended) {
+			lastActiveTime = SystemMillis.current();
+			responses.add(response);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * 结束（IO线程中收到结束帧或者连接关闭）
+	 *
+	 * @param error 异常，为null表示正常结束
+	 */
+	synchronized void onEnd(NetworkException error) {
+		if (!ended) {
+			ended = true;
+			this.error = error;
+			notifyAll();
+			cancelTimeout();
+		}
+	}
+
+	private void cancelTimeout() {
+		Timeout timeout = this.timeout;
+		if (timeout != null) {
+			timeout.cancel();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ResponseStream{request=" + request + "}";
+	}
+}
@@ -0,0 +1,74 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 流式请求数据块，命令头与所属流式请求相同并带有数据块标记
+ *
+ * 发送时由{@link StreamRequest}生成，数据零拷贝写出；接收时由解码器生成，数据为接收缓冲的引用，处理后释放
+ *
+ * @author zhangyancheng
+ */
+final class StreamChunk extends Command {
+
+	/**
+	 * 数据块内容
+	 */
+	ByteBuf data;
+
+	/**
+	 * 数据块长度（处理时data的读索引会变化）
+	 */
+	int length;
+
+	/**
+	 * 发送的数据块
+	 *
+	 * @param header 命令头
+	 * @param data 数据块内容
+	 */
+	StreamChunk(Header header, ByteBuf data) {
+		super(header);
+		this.data = data;
+		this.length = data.readableBytes();
+	}
+
+	/**
+	 * 接收的数据块，命令头已解码，解码命令体后设置数据块内容
+	 *
+	 * @param header 命令头
+	 */
+	StreamChunk(Header header) {
+		super(header);
+	}
+
+	/**
+	 * @return 是否为最后一个数据块
+	 */
+	boolean isLast() {
+		return header.isLastChunk();
+	}
+
+	@Override
+	protected Object bodyContent() {
+		return data;
+	}
+
+	@Override
+	protected void encodeBody(ByteBuf byteBuf) throws Exception {
+		byteBuf.writeBytes(data);
+	}
+
+	@Override
+	protected void decodeBody(ByteBuf byteBuf) throws Exception {
+		//引用接收缓冲，不做拷贝
+		length = byteBuf.readableBytes();
+		data = byteBuf.readRetainedSlice(length);
+	}
+
+	@Override
+	public String toString() {
+		return "StreamChunk{id=" + getId() + ", type=" + getType() + ", length=" + length +
+				", last=" + isLast() + "}";
+	}
+}
@@ -0,0 +1,51 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+import pers.zyc.tools.utils.SystemMillis;
+
+/**
+ * 流式响应许可，由消费端发送给生产端，许可数为可以继续发送的响应个数，小于0表示取消流式响应
+ *
+ * @author zhangyancheng
+ */
+final class StreamCredit extends Command {
+
+	/**
+	 * 取消流式响应
+	 */
+	static final int CANCEL = -1;
+
+	/**
+	 * 许可数
+	 */
+	int credits;
+
+	StreamCredit(Request request, int credits) {
+		super(new Header()
+				.headerType(Header.CREDIT)
+				.needAck(false)
+				.commandId(request.getId())
+				.commandType(request.getType())
+				.commandTime(SystemMillis.current()));
+		this.credits = credits;
+	}
+
+	StreamCredit(Header header) {
+		super(header);
+	}
+
+	@Override
+	protected void encodeBody(ByteBuf byteBuf) throws Exception {
+		byteBuf.writeInt(credits);
+	}
+
+	@Override
+	protected void decodeBody(ByteBuf byteBuf) throws Exception {
+		credits = byteBuf.readInt();
+	}
+
+	@Override
+	public String toString() {
+		return "StreamCredit{id=" + getId() + ", credits=" + credits + "}";
+	}
+}
@@ -0,0 +1,52 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+import pers.zyc.tools.utils.SystemMillis;
+
+/**
+ * 流式响应结束帧，由生产端在所有响应发送完后发送，生产异常时带有异常信息
+ *
+ * @author zhangyancheng
+ */
+final class StreamEnd extends Response {
+
+	/**
+	 * 异常信息，为null表示正常结束
+	 */
+	String error;
+
+	StreamEnd(Request request, String error) {
+		super(new Header()
+				.headerType(Header.RESPONSE)
+				.needAck(false)
+				.commandId(request.getId())
+				.commandType(request.getType())
+				.commandTime(SystemMillis.current())
+				.flags(Header.STREAM_CHUNK | Header.STREAM_LAST));
+		this.error = error;
+	}
+
+	StreamEnd(Header header) {
+		super(header);
+	}
+
+	@Override
+	protected void encodeBody(ByteBuf byteBuf) throws Exception {
+		if (error != null) {
+			byteBuf.writeBytes(error.getBytes(UTF_8));
+		}
+	}
+
+	@Override
+	protected void decodeBody(ByteBuf byteBuf) throws Exception {
+		if (byteBuf.isReadable()) {
+			error = byteBuf.toString(UTF_8);
+			byteBuf.skipBytes(byteBuf.readableBytes());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "StreamEnd{id=" + getId() + ", error=" + error + "}";
+	}
+}
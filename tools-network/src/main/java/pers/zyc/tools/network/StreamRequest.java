@@ -0,0 +1,106 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.util.Objects;
+
+/**
+ * 流式请求，请求内容按数据块（每块一个网络帧）依次发送，请求大小不受单帧最大长度限制，
+ * 发送端内存占用只与数据块大小有关
+ *
+ * 需开启流式传输（{@link NetService#setStreamEnabled(boolean)}）后发送，接收端通过{@link StreamRequestHandler}逐块处理
+ *
+ * 数据块大小由内容输入决定，例如{@link io.netty.handler.stream.ChunkedStream}、{@link io.netty.handler.stream.ChunkedNioFile}
+ *
+ * 请求本身只有命令头，由ChunkedWriteHandler读取为带有相同命令头的数据块（{@link StreamChunk}）写出，
+ * 请求内容只通过数据块发送
+ *
+ * @author zhangyancheng
+ */
+public class StreamRequest extends Request implements ChunkedInput<Command> {
+
+	/**
+	 * 请求内容
+	 */
+	private final ChunkedInput<ByteBuf> content;
+
+	/**
+	 * 最后一个数据块是否已生成
+	 */
+	private boolean lastChunkRead;
+
+	public StreamRequest(int requestType, ChunkedInput<ByteBuf> content) {
+		super(requestType);
+		this.content = Objects.requireNonNull(content);
+	}
+
+	public StreamRequest(int requestType, boolean needAck, ChunkedInput<ByteBuf> content) {
+		super(requestType, needAck);
+		this.content = Objects.requireNonNull(content);
+	}
+
+	@Override
+	public boolean isEndOfInput() throws Exception {
+		return lastChunkRead;
+	}
+
+	@Override
+	public void close() throws Exception {
+		content.close();
+	}
+
+	@Deprecated
+	@Override
+	public Command readChunk(ChannelHandlerContext ctx) throws Exception {
+		return readChunk(ctx.alloc());
+	}
+
+	@Override
+	public Command readChunk(ByteBufAllocator allocator) throws Exception {
+		if (lastChunkRead) {
+			return null;
+		}
+		ByteBuf data = content.isEndOfInput() ? null : content.readChunk(allocator);
+		boolean last = content.isEndOfInput();
+		if (data == null) {
+			if (!last) {
+				//内容暂时不可读
+				return null;
+			}
+			data = Unpooled.EMPTY_BUFFER;
+		}
+		lastChunkRead = last;
+
+		Header chunkHeader = new Header()
+				.headerType(header.getHeaderType())
+				.needAck(header.isNeedAck())
+				.commandVersion(header.getCommandVersion())
+				.commandId(header.getCommandId())
+				.commandType(header.getCommandType())
+				.commandTime(header.getCommandTime())
+				.flags(last ? Header.STREAM_CHUNK | Header.STREAM_LAST : Header.STREAM_CHUNK);
+		return new StreamChunk(chunkHeader, data);
+	}
+
+	@Override
+	public long length() {
+		return content.length();
+	}
+
+	@Override
+	public long progress() {
+		return content.progress();
+	}
+
+	@Override
+	protected void encodeBody(ByteBuf byteBuf) throws Exception {
+	}
+
+	@Override
+	protected void decodeBody(ByteBuf byteBuf) throws Exception {
+	}
+}
@@ -0,0 +1,31 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 流式请求处理器
+ *
+ * 同一请求的数据块在执行器中按顺序逐块处理（不会并发），所有数据块处理完后调用{@link #handle(Request)}返回响应，
+ * 处理过程中抛出异常后丢弃该请求剩余的数据块
+ *
+ * @author zhangyancheng
+ */
+public abstract class StreamRequestHandler extends BaseRequestHandler {
+
+	/**
+	 * 处理数据块
+	 *
+	 * @param stream 流式请求
+	 * @param chunk 数据块，只在调用期间有效，如需保留使用retain/retainedSlice并在使用后释放
+	 * @throws Exception 处理异常
+	 */
+	protected abstract void onChunk(RequestStream stream, ByteBuf chunk) throws Exception;
+
+	/**
+	 * 连接关闭导致请求未接收完整，在执行器中调用
+	 *
+	 * @param stream 流式请求
+	 */
+	protected void onAbort(RequestStream stream) {
+	}
+}
@@ -0,0 +1,50 @@
+package pers.zyc.tools.network;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * 流式响应处理器，一个请求返回多个响应，客户端通过{@link NetService#sendStream(Request, int)}发送请求
+ *
+ * 处理过程中通过{@link ResponseSink}逐个发送响应（许可不足时阻塞），处理方法返回后发送结束帧，
+ * 抛出异常时结束帧带有异常信息，客户端以异常结束
+ *
+ * 发送响应需要等待客户端许可，不能在IO线程中处理，
+ * 通过{@link DefaultRequestHandlerFactory#register(int, StreamResponseHandler, Executor)}注册并指定执行器
+ *
+ * @author zhangyancheng
+ */
+public abstract class StreamResponseHandler {
+
+	/**
+	 * 请求处理执行器
+	 *
+	 * @see RequestExecutors
+	 */
+	private Executor executor;
+
+	/**
+	 * @return 请求处理执行器
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * 设置请求处理执行器
+	 *
+	 * @param executor 执行器
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = Objects.requireNonNull(executor);
+	}
+
+	/**
+	 * 处理请求
+	 *
+	 * @param request 请求
+	 * @param sink 响应发送
+	 * @throws Exception 处理异常
+	 */
+	protected abstract void handleStream(Request request, ResponseSink sink) throws Exception;
+}
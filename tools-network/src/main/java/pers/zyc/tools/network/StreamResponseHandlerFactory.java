@@ -0,0 +1,18 @@
+package pers.zyc.tools.network;
+
+/**
+ * 流式响应处理器工厂，请求处理器工厂同时实现此接口时支持流式响应请求
+ *
+ * @author zhangyancheng
+ * @see DefaultRequestHandlerFactory
+ */
+public interface StreamResponseHandlerFactory {
+
+	/**
+	 * 通过请求类型获取流式响应处理器
+	 *
+	 * @param requestType 请求类型
+	 * @return 流式响应处理器，不存在返回null（按普通请求处理）
+	 */
+	StreamResponseHandler getStreamHandler(int requestType);
+}
@@ -0,0 +1,133 @@
+package pers.zyc.tools.network;
+
+import io.netty.channel.Channel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import pers.zyc.tools.utils.SystemMillis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author zhangyancheng
+ */
+public class BatchingRequestHandlerTest {
+
+	private static final int PORT = 18767;
+	private static final int EXPIRED = -1;
+
+	/**
+	 * 响应序号为批次大小，记录每批的截止时间
+	 */
+	static class SizeHandler extends BatchingRequestHandler<Blob> {
+
+		final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		final List<Long> deadlines = new CopyOnWriteArrayList<>();
+
+		SizeHandler() {
+			super(64, 20, 1024);
+		}
+
+		@Override
+		protected List<Response> handleBatch(List<Blob> requests) throws Exception {
+			batchSizes.add(requests.size());
+			deadlines.add(RequestContext.getDeadline());
+			List<Response> responses = new ArrayList<>(requests.size());
+			for (Blob request : requests) {
+				responses.add(new Element(request.getId(), requests.size()));
+			}
+			return responses;
+		}
+	}
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final SizeHandler handler = new SizeHandler();
+	private NetServer server;
+	private NetClient client;
+	private Channel channel;
+
+	@Before
+	public void setUp() throws Exception {
+		DefaultRequestHandlerFactory requestHandlerFactory = new DefaultRequestHandlerFactory();
+		requestHandlerFactory.register(Blob.CMD_TYPE, handler, executor);
+
+		server = new NetServer();
+		server.setPort(PORT);
+		server.setCommandFactory(Blob.factory());
+		server.setRequestHandlerFactory(requestHandlerFactory);
+		server.setRequestExpireTime(1000);
+		server.setRequestHandleExceptionHandler(new RequestHandleExceptionHandler() {
+
+			@Override
+			public Response handleException(Exception cause, Request request) {
+				return cause instanceof NetworkException.RequestExpiredException ?
+						new Element(request.getId(), EXPIRED) : null;
+			}
+		});
+		server.start();
+
+		client = new NetClient();
+		client.setCommandFactory(Element.factory());
+		client.start();
+		channel = client.createChannel("localhost", PORT);
+	}
+
+	@After
+	public void tearDown() {
+		client.stop();
+		server.stop();
+		executor.shutdownNow();
+	}
+
+	private Blob blob() {
+		Blob blob = new Blob(new byte[0], Compression.NONE);
+		blob.setChannel(channel);
+		return blob;
+	}
+
+	@Test
+	public void case_Batch_Success() throws Exception {
+		List<ResponseFuture> futures = new ArrayList<>();
+		for (int i = 0; i < 32; i++) {
+			futures.add(client.sendAsync(blob()));
+		}
+		int maxBatchSize = 0;
+		for (ResponseFuture future : futures) {
+			maxBatchSize = Math.max(maxBatchSize, ((Element) future.get()).seq);
+		}
+		Assert.assertTrue("max batch size " + maxBatchSize, maxBatchSize > 1);
+	}
+
+	@Test
+	public void case_Batch_InheritDeadline() throws Exception {
+		client.setPropagateDeadline(true);
+		long begin = SystemMillis.current();
+		client.sendSync(blob(), 3000);
+		long deadline = handler.deadlines.get(handler.deadlines.size() - 1);
+		Assert.assertTrue(deadline >= begin + 2900 && deadline <= SystemMillis.current() + 3000);
+	}
+
+	@Test
+	public void case_Batch_RequestExpired() throws Exception {
+		Blob blob = blob();
+		blob.getHeader().setCommandTime(SystemMillis.current() - 5000);
+		Assert.assertEquals(EXPIRED, ((Element) client.sendSync(blob)).seq);
+		Assert.assertTrue(handler.batchSizes.isEmpty());
+	}
+
+	@Test
+	public void case_Handle_SingleBatch() throws Exception {
+		Element element = (Element) handler.handle(new Blob(new byte[0], Compression.NONE));
+		Assert.assertEquals(1, element.seq);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void case_Register_NoExecutor() {
+		new DefaultRequestHandlerFactory().register(Blob.CMD_TYPE, new SizeHandler());
+	}
+}
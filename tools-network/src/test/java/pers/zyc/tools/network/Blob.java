@@ -0,0 +1,60 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 测试用请求，命令体为原始字节
+ *
+ * @author zhangyancheng
+ */
+class Blob extends Request {
+
+	static final int CMD_TYPE = 1;
+
+	byte[] data;
+
+	private Compression compression;
+
+	Blob(byte[] data, Compression compression) {
+		super(CMD_TYPE);
+		this.data = data;
+		this.compression = compression;
+	}
+
+	Blob(Header header) {
+		super(header);
+	}
+
+	static CommandFactory factory() {
+		DefaultCommandFactory commandFactory = new DefaultCommandFactory();
+		commandFactory.register(CMD_TYPE, new CommandFactory() {
+
+			@Override
+			public Command createByHeader(Header header) {
+				return new Blob(header);
+			}
+		});
+		return commandFactory;
+	}
+
+	@Override
+	public int getEstimatedSize() {
+		return data.length;
+	}
+
+	@Override
+	protected Compression compression() {
+		return compression;
+	}
+
+	@Override
+	protected void encodeBody(ByteBuf byteBuf) throws Exception {
+		byteBuf.writeBytes(data);
+	}
+
+	@Override
+	protected void decodeBody(ByteBuf byteBuf) throws Exception {
+		data = new byte[byteBuf.readableBytes()];
+		byteBuf.readBytes(data);
+	}
+}
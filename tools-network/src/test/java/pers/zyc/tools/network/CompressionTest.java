@@ -0,0 +1,116 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * @author zhangyancheng
+ */
+public class CompressionTest {
+
+	private static final int THRESHOLD = 1024;
+
+	private static final int[] SIZES = {0, THRESHOLD, Compression.SNAPPY_BLOCK_LENGTH,
+			Compression.SNAPPY_BLOCK_LENGTH + 1, 40000, 1024 * 1024};
+
+	/**
+	 * 可压缩的数据（随机单词拼接）
+	 */
+	private static byte[] data(int size) {
+		String[] words = {"request", "response", "channel", "header", "timeout", "compression"};
+		Random random = new Random(size);
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; ) {
+			byte[] word = words[random.nextInt(words.length)].getBytes();
+			for (int j = 0; j < word.length && i < size; j++) {
+				data[i++] = word[j];
+			}
+			if (random.nextInt(8) == 0 && i < size) {
+				data[i++] = (byte) random.nextInt();
+			}
+		}
+		return data;
+	}
+
+	private static void assertRoundTrip(Compression compression, int size) throws Exception {
+		byte[] data = data(size);
+		ByteBuf compressed = Unpooled.buffer();
+		ByteBuf uncompressed = Unpooled.buffer(size, size);
+		try {
+			compression.compress(Unpooled.wrappedBuffer(data), compressed);
+			compression.decompress(compressed, uncompressed);
+			Assert.assertFalse(compressed.isReadable());
+			Assert.assertArrayEquals(compression + " " + size, data, toBytes(uncompressed));
+		} finally {
+			compressed.release();
+			uncompressed.release();
+		}
+	}
+
+	private static byte[] toBytes(ByteBuf byteBuf) {
+		byte[] bytes = new byte[byteBuf.readableBytes()];
+		byteBuf.readBytes(bytes);
+		return bytes;
+	}
+
+	@Test
+	public void case_Snappy_RoundTrip() throws Exception {
+		for (int size : SIZES) {
+			assertRoundTrip(Compression.SNAPPY, size);
+		}
+	}
+
+	@Test
+	public void case_Deflate_RoundTrip() throws Exception {
+		for (int size : SIZES) {
+			assertRoundTrip(Compression.DEFLATE, size);
+		}
+	}
+
+	@Test
+	public void case_Snappy_Compressed() throws Exception {
+		ByteBuf compressed = Unpooled.buffer();
+		try {
+			Compression.SNAPPY.compress(Unpooled.wrappedBuffer(data(1024 * 1024)), compressed);
+			Assert.assertTrue(compressed.readableBytes() < 1024 * 1024 / 2);
+		} finally {
+			compressed.release();
+		}
+	}
+
+	private static void assertCodecRoundTrip(Compression compression, int size) {
+		NetClient netClient = new NetClient();
+		netClient.setCommandFactory(Blob.factory());
+		netClient.setCompressionThreshold(THRESHOLD);
+		EmbeddedChannel channel = new EmbeddedChannel(netClient.new Encoder(), netClient.new Decoder());
+
+		byte[] data = data(size);
+		Blob blob = new Blob(data, compression);
+		Assert.assertTrue(channel.writeOutbound(blob));
+		ByteBuf frame = channel.readOutbound();
+		if (size >= THRESHOLD && compression != Compression.NONE) {
+			Assert.assertTrue(compression + " " + size, frame.readableBytes() < size);
+		}
+		Assert.assertTrue(channel.writeInbound(frame));
+		Blob decoded = channel.readInbound();
+		Assert.assertEquals(blob.getId(), decoded.getId());
+		Assert.assertEquals(size >= THRESHOLD ? compression : Compression.NONE,
+				decoded.getHeader().getCompression());
+		Assert.assertArrayEquals(compression + " " + size, data, decoded.data);
+		Assert.assertFalse(channel.finish());
+	}
+
+	@Test
+	public void case_Codec_RoundTrip() {
+		for (Compression compression : Compression.values()) {
+			for (int size : SIZES) {
+				assertCodecRoundTrip(compression, size);
+			}
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package pers.zyc.tools.network;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author zhangyancheng
+ */
+public class DefaultNetworkMetricsTest {
+
+	@Test
+	public void case_RoundTrip_SuccessOnly() {
+		DefaultNetworkMetrics metrics = new DefaultNetworkMetrics();
+		Request request = new Blob(new byte[0], Compression.NONE);
+		for (int i = 0; i < 4; i++) {
+			metrics.requestStarted(request);
+		}
+		metrics.requestCompleted(request, 1000000, null);
+		metrics.requestCompleted(request, 5000000000L, new NetworkException.TimeoutException());
+		metrics.requestCompleted(request, 2000000, new NetworkException.RequestCancelledException());
+		metrics.requestCompleted(request, 3000000, new NetworkException("failed"));
+
+		Assert.assertEquals(0, metrics.getInFlightRequests());
+		Assert.assertEquals(4, metrics.getCompletedRequests());
+		Assert.assertEquals(1, metrics.getTimeoutRequests());
+		Assert.assertEquals(1, metrics.getFailedRequests());
+		Assert.assertEquals(1, metrics.getRoundTripHistogram(Blob.CMD_TYPE).getCount());
+		Assert.assertTrue(metrics.getRoundTripTime(Blob.CMD_TYPE, 100) < 2000);
+	}
+
+	@Test
+	public void case_RoundTrip_NoSuccess() {
+		DefaultNetworkMetrics metrics = new DefaultNetworkMetrics();
+		Request request = new Blob(new byte[0], Compression.NONE);
+		metrics.requestStarted(request);
+		metrics.requestCompleted(request, 5000000000L, new NetworkException.TimeoutException());
+
+		Assert.assertEquals(1, metrics.getTimeoutRequests());
+		Assert.assertEquals(0, metrics.getRoundTripTime(Blob.CMD_TYPE, 99));
+	}
+}
@@ -0,0 +1,46 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 测试用响应，命令体为序号
+ *
+ * @author zhangyancheng
+ */
+class Element extends Response {
+
+	static final int CMD_TYPE = 2;
+
+	int seq;
+
+	Element(int requestId, int seq) {
+		super(CMD_TYPE, requestId);
+		this.seq = seq;
+	}
+
+	Element(Header header) {
+		super(header);
+	}
+
+	static CommandFactory factory() {
+		DefaultCommandFactory commandFactory = new DefaultCommandFactory();
+		commandFactory.register(CMD_TYPE, new CommandFactory() {
+
+			@Override
+			public Command createByHeader(Header header) {
+				return new Element(header);
+			}
+		});
+		return commandFactory;
+	}
+
+	@Override
+	protected void encodeBody(ByteBuf byteBuf) throws Exception {
+		byteBuf.writeInt(seq);
+	}
+
+	@Override
+	protected void decodeBody(ByteBuf byteBuf) throws Exception {
+		seq = byteBuf.readInt();
+	}
+}
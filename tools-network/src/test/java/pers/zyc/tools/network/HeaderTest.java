@@ -0,0 +1,112 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import org.junit.Assert;
+import org.junit.Test;
+import pers.zyc.tools.utils.SystemMillis;
+
+/**
+ * @author zhangyancheng
+ */
+public class HeaderTest {
+
+	private static Header header() {
+		return new Header().headerType(Header.REQUEST).needAck(true).commandId(7).commandType(3)
+				.commandVersion(2).commandTime(123456789L);
+	}
+
+	private static Header roundTrip(Header header, int expectedLength) throws Exception {
+		ByteBuf byteBuf = Unpooled.buffer();
+		try {
+			header.encode(byteBuf);
+			Assert.assertEquals(expectedLength, byteBuf.readableBytes());
+			Header decoded = new Header();
+			decoded.decode(byteBuf);
+			Assert.assertFalse(byteBuf.isReadable());
+			return decoded;
+		} finally {
+			byteBuf.release();
+		}
+	}
+
+	@Test
+	public void case_NoDeadline_LegacyLayout() throws Exception {
+		ByteBuf byteBuf = Unpooled.buffer();
+		try {
+			header().encode(byteBuf);
+			Assert.assertEquals(Header.REQUEST_HEADER_LENGTH, byteBuf.readableBytes());
+			//与旧版本相同，第二字节为是否需要ack
+			Assert.assertEquals(1, byteBuf.getByte(1));
+		} finally {
+			byteBuf.release();
+		}
+
+		Header decoded = roundTrip(header(), Header.REQUEST_HEADER_LENGTH);
+		Assert.assertTrue(decoded.isNeedAck());
+		Assert.assertEquals(7, decoded.getCommandId());
+		Assert.assertEquals(3, decoded.getCommandType());
+		Assert.assertEquals(2, decoded.getCommandVersion());
+		Assert.assertEquals(123456789L, decoded.getCommandTime());
+		Assert.assertEquals(0, decoded.getDeadline());
+	}
+
+	@Test
+	public void case_Deadline_RoundTrip() throws Exception {
+		long deadline = SystemMillis.current() + 10000;
+		Header header = header().deadline(deadline);
+		ByteBuf byteBuf = Unpooled.buffer();
+		try {
+			header.encode(byteBuf);
+			int second = byteBuf.getByte(1);
+			Assert.assertEquals(Header.DEADLINE_VERSION, second >>> Header.VERSION_SHIFT);
+			Assert.assertEquals(Header.DEADLINE_FLAG | Header.NEED_ACK, second & 0x0F);
+		} finally {
+			byteBuf.release();
+		}
+
+		Header decoded = roundTrip(header, Header.REQUEST_HEADER_LENGTH + Header.DEADLINE_LENGTH);
+		Assert.assertTrue(decoded.isNeedAck());
+		Assert.assertEquals(7, decoded.getCommandId());
+		//剩余时间按本地时间还原，允许编解码之间的时钟推进
+		Assert.assertTrue(Math.abs(decoded.getDeadline() - deadline) <= 100);
+		Assert.assertFalse(decoded.isExpired());
+	}
+
+	@Test
+	public void case_Deadline_Expired() throws Exception {
+		Header decoded = roundTrip(header().deadline(SystemMillis.current() - 1000),
+				Header.REQUEST_HEADER_LENGTH + Header.DEADLINE_LENGTH);
+		//已过截止时间的写出最小剩余时间
+		Assert.assertTrue(decoded.getDeadline() > 0);
+	}
+
+	@Test
+	public void case_DeadlineFlag_IgnoredInVersion0() throws Exception {
+		ByteBuf byteBuf = Unpooled.buffer();
+		try {
+			header().encode(byteBuf);
+			//版本0的命令头没有剩余时间，截止时间标记位无效
+			byteBuf.setByte(1, Header.DEADLINE_FLAG | Header.NEED_ACK);
+			Header decoded = new Header();
+			decoded.decode(byteBuf);
+			Assert.assertFalse(byteBuf.isReadable());
+			Assert.assertEquals(0, decoded.getDeadline());
+		} finally {
+			byteBuf.release();
+		}
+	}
+
+	@Test(expected = DecoderException.class)
+	public void case_UnsupportedVersion_Fail() throws Exception {
+		ByteBuf byteBuf = Unpooled.buffer();
+		try {
+			header().encode(byteBuf);
+			byteBuf.setByte(1, ((Header.DEADLINE_VERSION + 1) << Header.VERSION_SHIFT) | Header.NEED_ACK);
+			new Header().decode(byteBuf);
+		} finally {
+			byteBuf.release();
+		}
+	}
+}
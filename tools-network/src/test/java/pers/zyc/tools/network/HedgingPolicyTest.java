@@ -0,0 +1,82 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author zhangyancheng
+ */
+public class HedgingPolicyTest {
+
+	/**
+	 * 零拷贝命令体的请求
+	 */
+	static class ZeroCopyBlob extends Blob {
+
+		ZeroCopyBlob(byte[] data) {
+			super(data, Compression.NONE);
+		}
+
+		@Override
+		protected Object bodyContent() {
+			return Unpooled.wrappedBuffer(data);
+		}
+	}
+
+	@Test
+	public void case_Hedgeable() {
+		HedgingPolicy hedgingPolicy = new HedgingPolicy();
+		Blob blob = new Blob(new byte[8], Compression.NONE);
+		Assert.assertFalse(hedgingPolicy.isHedgeable(blob));
+
+		hedgingPolicy.addHedgeableType(Blob.CMD_TYPE);
+		Assert.assertTrue(hedgingPolicy.isHedgeable(blob));
+		//零拷贝命令体不对冲
+		Assert.assertFalse(hedgingPolicy.isHedgeable(new ZeroCopyBlob(new byte[8])));
+		//单向请求不对冲
+		Blob oneWay = new Blob(new byte[8], Compression.NONE);
+		oneWay.getHeader().setNeedAck(false);
+		Assert.assertFalse(hedgingPolicy.isHedgeable(oneWay));
+	}
+
+	@Test
+	public void case_HedgeDelay_SuccessOnly() {
+		HedgingPolicy hedgingPolicy = new HedgingPolicy();
+		hedgingPolicy.setMinSamples(10);
+		DefaultNetworkMetrics metrics = new DefaultNetworkMetrics();
+		NetClient netClient = new NetClient();
+		netClient.setNetworkMetrics(metrics);
+		Blob blob = new Blob(new byte[8], Compression.NONE);
+
+		Assert.assertEquals(hedgingPolicy.getDefaultDelay(), hedgingPolicy.getHedgeDelay(netClient, blob));
+		for (int i = 0; i < 100; i++) {
+			metrics.requestCompleted(blob, 5000000, null);
+			//超时与被取消的请求不影响对冲延迟
+			metrics.requestCompleted(blob, 3000000000L, new NetworkException.TimeoutException());
+			metrics.requestCompleted(blob, 800000000L, new NetworkException.RequestCancelledException());
+		}
+		Assert.assertEquals(5, hedgingPolicy.getHedgeDelay(netClient, blob));
+	}
+
+	@Test
+	public void case_HedgeRequest_Codec() {
+		NetClient netClient = new NetClient();
+		netClient.setCommandFactory(Blob.factory());
+		EmbeddedChannel channel = new EmbeddedChannel(netClient.new Encoder(), netClient.new Decoder());
+
+		byte[] data = {1, 2, 3, 4, 5};
+		Blob origin = new Blob(data, Compression.NONE);
+		HedgeRequest hedge = new HedgeRequest(origin);
+		Assert.assertTrue(channel.writeOutbound(hedge));
+		ByteBuf frame = channel.readOutbound();
+		Assert.assertTrue(channel.writeInbound(frame));
+		Blob decoded = channel.readInbound();
+		Assert.assertEquals(hedge.getId(), decoded.getId());
+		Assert.assertTrue(origin.getId() != decoded.getId());
+		Assert.assertArrayEquals(data, decoded.data);
+		Assert.assertFalse(channel.finish());
+	}
+}
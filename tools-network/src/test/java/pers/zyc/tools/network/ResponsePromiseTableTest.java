@@ -0,0 +1,63 @@
+package pers.zyc.tools.network;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * @author zhangyancheng
+ */
+public class ResponsePromiseTableTest {
+
+	private final NetClient netClient = new NetClient();
+
+	private ResponsePromise promise() {
+		return new ResponsePromise(netClient, new Blob(new byte[0], Compression.NONE), 1000, null);
+	}
+
+	@Test
+	public void case_PutRemove() {
+		ResponsePromiseTable table = new ResponsePromiseTable();
+		ResponsePromise first = promise(), second = promise();
+		table.put(first);
+		table.put(second);
+		Assert.assertEquals(2, table.size());
+
+		Assert.assertSame(first, table.remove(first.request.getId()));
+		Assert.assertNull(table.remove(first.request.getId()));
+		Assert.assertEquals(1, table.size());
+
+		table.remove(second);
+		Assert.assertEquals(0, table.size());
+	}
+
+	@Test
+	public void case_Remove_ReusedId() {
+		ResponsePromiseTable table = new ResponsePromiseTable();
+		ResponsePromise stale = promise(), current = promise();
+		current.request.getHeader().setCommandId(stale.request.getId());
+		table.put(stale);
+		table.put(current);
+		Assert.assertEquals(1, table.size());
+
+		//请求id已被后续请求复用，不删除后续请求的Promise
+		table.remove(stale);
+		Assert.assertEquals(1, table.size());
+		Assert.assertSame(current, table.remove(current.request.getId()));
+	}
+
+	@Test
+	public void case_RemoveAll() {
+		ResponsePromiseTable table = new ResponsePromiseTable();
+		Assert.assertTrue(table.removeAll().isEmpty());
+
+		for (int i = 0; i < 100; i++) {
+			table.put(promise());
+		}
+		List<ResponsePromise> removed = table.removeAll();
+		Assert.assertEquals(100, removed.size());
+		Assert.assertEquals(0, table.size());
+		Assert.assertTrue(table.removeAll().isEmpty());
+	}
+}
@@ -0,0 +1,160 @@
+package pers.zyc.tools.network;
+
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author zhangyancheng
+ */
+public class ResponsePromiseTest {
+
+	private final NetClient netClient = new NetClient();
+
+	private ResponsePromise promise(Promise<Response> bridge) {
+		return new ResponsePromise(netClient, new Blob(new byte[0], Compression.NONE), 1000, bridge);
+	}
+
+	/**
+	 * 记录结果的监听器
+	 */
+	private static class RecordListener implements ResponseFutureListener {
+
+		final List<Object> results = new ArrayList<>();
+
+		@Override
+		public void responseReceived(Request request, Response response) {
+			results.add(response);
+		}
+
+		@Override
+		public void exceptionCaught(Request request, NetworkException e) {
+			results.add(e);
+		}
+	}
+
+	@Test
+	public void case_Response_Success() throws Exception {
+		ResponsePromise promise = promise(null);
+		Response response = new Element(1, 0);
+		Assert.assertFalse(promise.isDone());
+		Assert.assertTrue(promise.response(response));
+		Assert.assertTrue(promise.isDone());
+		Assert.assertSame(response, promise.get());
+	}
+
+	@Test
+	public void case_Response_FirstWins() throws Exception {
+		ResponsePromise promise = promise(null);
+		Response response = new Element(1, 0);
+		Assert.assertTrue(promise.response(response));
+		//超时与响应并发时只有一方生效
+		Assert.assertFalse(promise.response(new NetworkException.TimeoutException()));
+		Assert.assertSame(response, promise.get());
+	}
+
+	@Test
+	public void case_NullResponse_Success() throws Exception {
+		ResponsePromise promise = promise(null);
+		Assert.assertTrue(promise.response(null));
+		Assert.assertTrue(promise.isDone());
+		Assert.assertNull(promise.get());
+	}
+
+	@Test(expected = NetworkException.TimeoutException.class)
+	public void case_Exception_Fail() throws Exception {
+		ResponsePromise promise = promise(null);
+		promise.response(new NetworkException.TimeoutException());
+		promise.get();
+	}
+
+	@Test
+	public void case_Exception_Wrapped() throws Exception {
+		ResponsePromise promise = promise(null);
+		IllegalStateException cause = new IllegalStateException();
+		promise.response(cause);
+		try {
+			promise.get();
+			Assert.fail();
+		} catch (NetworkException e) {
+			Assert.assertSame(cause, e.getCause());
+		}
+	}
+
+	@Test(expected = NetworkException.TimeoutException.class)
+	public void case_Get_Timeout() throws Exception {
+		promise(null).get(50);
+	}
+
+	@Test
+	public void case_Get_Wakeup() throws Exception {
+		final ResponsePromise promise = promise(null);
+		final AtomicReference<Response> result = new AtomicReference<>();
+		final CountDownLatch done = new CountDownLatch(1);
+		Thread waiter = new Thread() {
+			@Override
+			public void run() {
+				try {
+					result.set(promise.get(5000));
+				} catch (InterruptedException ignored) {
+				}
+				done.countDown();
+			}
+		};
+		waiter.start();
+		Thread.sleep(50);
+		Response response = new Element(1, 0);
+		promise.response(response);
+		Assert.assertTrue(done.await(1000, TimeUnit.MILLISECONDS));
+		Assert.assertSame(response, result.get());
+	}
+
+	@Test
+	public void case_Listeners_Notified() throws Exception {
+		ResponsePromise promise = promise(null);
+		RecordListener first = new RecordListener(), second = new RecordListener(), late = new RecordListener();
+		promise.addListener(first);
+		promise.addListener(second);
+		Response response = new Element(1, 0);
+		promise.response(response);
+		//完成后添加的监听器立即通知
+		promise.addListener(late);
+
+		Assert.assertEquals(1, first.results.size());
+		Assert.assertSame(response, first.results.get(0));
+		Assert.assertEquals(1, second.results.size());
+		Assert.assertSame(response, second.results.get(0));
+		Assert.assertEquals(1, late.results.size());
+		Assert.assertSame(response, late.results.get(0));
+	}
+
+	@Test
+	public void case_Listener_Removed() throws Exception {
+		ResponsePromise promise = promise(null);
+		RecordListener listener = new RecordListener();
+		promise.addListener(listener);
+		promise.removeListener(listener);
+		promise.response(new NetworkException.TimeoutException());
+		Assert.assertTrue(listener.results.isEmpty());
+	}
+
+	@Test
+	public void case_Bridge_Completed() throws Exception {
+		Promise<Response> success = new DefaultPromise<>(ImmediateEventExecutor.INSTANCE);
+		Response response = new Element(1, 0);
+		promise(success).response(response);
+		Assert.assertSame(response, success.getNow());
+
+		Promise<Response> failure = new DefaultPromise<>(ImmediateEventExecutor.INSTANCE);
+		promise(failure).response(new NetworkException.TimeoutException());
+		Assert.assertTrue(failure.cause() instanceof NetworkException.TimeoutException);
+	}
+}
@@ -0,0 +1,136 @@
+package pers.zyc.tools.network;
+
+import io.netty.channel.Channel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zhangyancheng
+ */
+public class ResponseStreamTest {
+
+	private static final int PORT = 18766;
+	private static final int REQUEST_TIMEOUT = 500;
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final CountDownLatch cancelled = new CountDownLatch(1);
+	private volatile Request handled;
+	private NetServer server;
+	private NetClient client;
+	private Channel channel;
+
+	@Before
+	public void setUp() throws Exception {
+		DefaultRequestHandlerFactory requestHandlerFactory = new DefaultRequestHandlerFactory();
+		requestHandlerFactory.register(Blob.CMD_TYPE, new StreamResponseHandler() {
+
+			@Override
+			protected void handleStream(Request request, ResponseSink sink) throws Exception {
+				handled = request;
+				int count = ((Blob) request).data.length;
+				if (count == 0) {
+					//不推送也不结束，直到消费端取消
+					while (!sink.isCancelled() && release.getCount() > 0) {
+						Thread.sleep(10);
+					}
+					if (sink.isCancelled()) {
+						cancelled.countDown();
+					}
+					return;
+				}
+				for (int i = 0; i < count; i++) {
+					sink.send(new Element(request.getId(), i));
+				}
+			}
+		}, executor);
+
+		server = new NetServer();
+		server.setPort(PORT);
+		server.setCommandFactory(Blob.factory());
+		server.setRequestHandlerFactory(requestHandlerFactory);
+		server.setRecycleCommands(true);
+		server.start();
+
+		client = new NetClient();
+		client.setRequestTimeout(REQUEST_TIMEOUT);
+		client.setCommandFactory(Element.factory());
+		client.start();
+		channel = client.createChannel("localhost", PORT);
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		client.stop();
+		server.stop();
+		executor.shutdownNow();
+	}
+
+	private ResponseStream sendStream(int count, int window) {
+		Blob blob = new Blob(new byte[count], Compression.NONE);
+		blob.setChannel(channel);
+		return client.sendStream(blob, window);
+	}
+
+	@Test
+	public void case_Stream_Success() throws Exception {
+		try (ResponseStream stream = sendStream(100, 8)) {
+			for (int i = 0; i < 100; i++) {
+				Element element = (Element) stream.next();
+				Assert.assertNotNull(element);
+				Assert.assertEquals(i, element.seq);
+			}
+			Assert.assertNull(stream.next());
+			Assert.assertTrue(stream.isDone());
+		}
+	}
+
+	@Test
+	public void case_Stream_SlowConsumerNotIdle() throws Exception {
+		try (ResponseStream stream = sendStream(4, 2)) {
+			for (int i = 0; i < 4; i++) {
+				//消费慢于空闲超时，等待消费的响应不计空闲
+				Thread.sleep(REQUEST_TIMEOUT + 200);
+				Assert.assertEquals(i, ((Element) stream.next()).seq);
+			}
+			Assert.assertNull(stream.next());
+		}
+	}
+
+	@Test
+	public void case_Stream_IdleTimeout() throws Exception {
+		ResponseStream stream = sendStream(0, 8);
+		try {
+			stream.next(REQUEST_TIMEOUT * 4);
+			Assert.fail("Stream not timeout");
+		} catch (NetworkException.TimeoutException expected) {
+			Assert.assertTrue(stream.isDone());
+		}
+		//生产端收到取消
+		Assert.assertTrue(cancelled.await(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS));
+		stream.close();
+	}
+
+	@Test
+	public void case_Stream_RequestRecycled() throws Exception {
+		try (ResponseStream stream = sendStream(2, 8)) {
+			Assert.assertNotNull(stream.next());
+			Assert.assertNotNull(stream.next());
+			Assert.assertNull(stream.next());
+		}
+		//流结束后回收请求
+		long deadline = System.currentTimeMillis() + REQUEST_TIMEOUT;
+		while (handled.getHeader() != null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertNull(handled.getHeader());
+	}
+}
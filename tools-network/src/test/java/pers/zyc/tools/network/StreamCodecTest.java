@@ -0,0 +1,106 @@
+package pers.zyc.tools.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.stream.ChunkedStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+/**
+ * @author zhangyancheng
+ */
+public class StreamCodecTest {
+
+	private static final int CHUNK_SIZE = 4096;
+
+	private static EmbeddedChannel channel() {
+		NetClient netClient = new NetClient();
+		netClient.setCommandFactory(Blob.factory());
+		return new EmbeddedChannel(netClient.new Encoder(), netClient.new Decoder());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T roundTrip(EmbeddedChannel channel, Command command) {
+		Assert.assertTrue(channel.writeOutbound(command));
+		ByteBuf frame = channel.readOutbound();
+		Assert.assertTrue(channel.writeInbound(frame));
+		return (T) channel.readInbound();
+	}
+
+	private static void assertChunks(int size) throws Exception {
+		byte[] data = new byte[size];
+		new Random(size).nextBytes(data);
+		StreamRequest request = new StreamRequest(Blob.CMD_TYPE,
+				new ChunkedStream(new ByteArrayInputStream(data), CHUNK_SIZE));
+		EmbeddedChannel channel = channel();
+
+		int offset = 0, chunks = 0;
+		while (!request.isEndOfInput()) {
+			StreamChunk chunk = (StreamChunk) request.readChunk(UnpooledByteBufAllocator.DEFAULT);
+			StreamChunk decoded = roundTrip(channel, chunk);
+			try {
+				Assert.assertEquals(request.getId(), decoded.getId());
+				Assert.assertEquals(Blob.CMD_TYPE, decoded.getType());
+				Assert.assertTrue(decoded.getHeader().isStreamChunk());
+				Assert.assertEquals(request.isEndOfInput(), decoded.isLast());
+				Assert.assertEquals(decoded.data.readableBytes(), decoded.length);
+				for (int i = 0; i < decoded.length; i++) {
+					Assert.assertEquals(data[offset++], decoded.data.getByte(decoded.data.readerIndex() + i));
+				}
+			} finally {
+				decoded.data.release();
+			}
+			chunks++;
+		}
+		Assert.assertEquals(size, offset);
+		Assert.assertEquals(Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE), chunks);
+		Assert.assertFalse(channel.finish());
+	}
+
+	@Test
+	public void case_StreamChunk_RoundTrip() throws Exception {
+		assertChunks(CHUNK_SIZE * 3 + 100);
+	}
+
+	@Test
+	public void case_StreamChunk_ExactChunks() throws Exception {
+		assertChunks(CHUNK_SIZE * 2);
+	}
+
+	@Test
+	public void case_StreamChunk_Empty() throws Exception {
+		//空内容只有一个空的最后数据块
+		assertChunks(0);
+	}
+
+	@Test
+	public void case_StreamEnd_RoundTrip() {
+		Blob request = new Blob(new byte[0], Compression.NONE);
+		EmbeddedChannel channel = channel();
+
+		StreamEnd end = roundTrip(channel, new StreamEnd(request, null));
+		Assert.assertEquals(request.getId(), end.getId());
+		Assert.assertTrue(end.getHeader().isLastChunk());
+		Assert.assertNull(end.error);
+
+		StreamEnd failed = roundTrip(channel, new StreamEnd(request, "处理失败"));
+		Assert.assertEquals("处理失败", failed.error);
+		Assert.assertFalse(channel.finish());
+	}
+
+	@Test
+	public void case_StreamCredit_RoundTrip() {
+		Blob request = new Blob(new byte[0], Compression.NONE);
+		EmbeddedChannel channel = channel();
+
+		StreamCredit credit = roundTrip(channel, new StreamCredit(request, 16));
+		Assert.assertEquals(request.getId(), credit.getId());
+		Assert.assertEquals(Header.CREDIT, credit.getHeader().getType());
+		Assert.assertEquals(16, credit.credits);
+		Assert.assertFalse(channel.finish());
+	}
+}
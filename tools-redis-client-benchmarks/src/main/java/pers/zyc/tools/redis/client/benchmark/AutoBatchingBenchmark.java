@@ -0,0 +1,59 @@
+package pers.zyc.tools.redis.client.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pers.zyc.tools.redis.client.AsyncClient;
+import pers.zyc.tools.redis.client.ClientConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis管道连接自动批量的吞吐与延迟权衡，多线程并发GET，对比独占连接池、管道连接及不同的批量参数
+ *
+ * 需要可访问的Redis服务，通过-p redisUri=redis://host:port指定
+ *
+ * @author zhangyancheng
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class AutoBatchingBenchmark {
+
+	@Param("redis://localhost:6379")
+	public String redisUri;
+
+	/**
+	 * 连接参数，为空时使用独占连接池
+	 */
+	@Param({
+			"",
+			"pipelineConnections=1",
+			"pipelineConnections=1&pipelineBatchDelay=1",
+			"pipelineConnections=1&pipelineBatchDelay=1&pipelineBatchSize=32"
+	})
+	public String options;
+
+	private static final String KEY = "AutoBatchingBenchmark";
+
+	private AsyncClient client;
+
+	@Setup
+	public void setup() {
+		client = new AsyncClient(new ClientConfig(options.isEmpty() ? redisUri :
+				redisUri + "?maxConnectionTotal=32&" + options));
+		client._set(KEY, "value").get();
+	}
+
+	@TearDown
+	public void tearDown() {
+		client.close();
+	}
+
+	@Benchmark
+	public String get() {
+		return client._get(KEY).get();
+	}
+}
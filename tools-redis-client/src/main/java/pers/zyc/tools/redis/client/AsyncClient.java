@@ -29,6 +29,22 @@ public class AsyncClient implements AsyncCommands, Closeable {
 		return new KeyScanner(connectionPool);
 	}
 
+	/**
+	 * @return 管道, 多个命令一次写出
+	 */
+	public Pipeline createPipeline() {
+		return new Pipeline(connectionPool);
+	}
+
+	/**
+	 * 创建事务, 事务占用一个独占连接, 使用完后需关闭
+	 *
+	 * @return 事务
+	 */
+	public Transaction createTransaction() {
+		return new Transaction(connectionPool);
+	}
+
 	@Override
 	public Future<Boolean> _set(String key, String value) {
 		return connectionPool.getConnection().send(new pers.zyc.tools.redis.client.request.string.Set(key, value));
@@ -25,6 +25,18 @@ public class ClientConfig {
 	private boolean needPreparePool = false;
 	private int maxConnectionTotal = GenericObjectPoolConfig.DEFAULT_MAX_TOTAL;
 	private int minConnectionIdle = GenericObjectPoolConfig.DEFAULT_MIN_IDLE;
+	/**
+	 * 每个NetWorker上的管道连接数, 为0时使用独占连接池
+	 */
+	private int pipelineConnections;
+	/**
+	 * 管道连接自动批量的最大请求数, 达到后立即写出, 为0时不限制
+	 */
+	private int pipelineBatchSize;
+	/**
+	 * 管道连接自动批量的最大等待时间(ms), 批量中第一个请求最多等待此时间后写出, 为0时不等待(每个请求立即写出)
+	 */
+	private int pipelineBatchDelay;
 
 	public ClientConfig(boolean ssl,
 						String host,
@@ -38,6 +50,23 @@ public class ClientConfig {
 						boolean needPreparePool,
 						int maxConnectionTotal,
 						int minConnectionIdle) {
+		this(ssl, host, password, port, db, connectionTimeout, requestTimeout, netWorkers,
+				requestTimeoutDetectInterval, needPreparePool, maxConnectionTotal, minConnectionIdle, 0);
+	}
+
+	public ClientConfig(boolean ssl,
+						String host,
+						String password,
+						int port,
+						int db,
+						int connectionTimeout,
+						int requestTimeout,
+						int netWorkers,
+						int requestTimeoutDetectInterval,
+						boolean needPreparePool,
+						int maxConnectionTotal,
+						int minConnectionIdle,
+						int pipelineConnections) {
 		this.ssl = ssl;
 		this.host = host;
 		this.password = password;
@@ -50,6 +79,7 @@ public class ClientConfig {
 		this.needPreparePool = needPreparePool;
 		this.maxConnectionTotal = maxConnectionTotal;
 		this.minConnectionIdle = minConnectionIdle;
+		this.pipelineConnections = pipelineConnections;
 
 		validate();
 	}
@@ -93,6 +123,15 @@ public class ClientConfig {
 		if ((val = queries.get("minConnectionIdle")) != null) {
 			this.minConnectionIdle = Integer.parseInt(val);
 		}
+		if ((val = queries.get("pipelineConnections")) != null) {
+			this.pipelineConnections = Integer.parseInt(val);
+		}
+		if ((val = queries.get("pipelineBatchSize")) != null) {
+			this.pipelineBatchSize = Integer.parseInt(val);
+		}
+		if ((val = queries.get("pipelineBatchDelay")) != null) {
+			this.pipelineBatchDelay = Integer.parseInt(val);
+		}
 
 		validate();
 	}
@@ -125,6 +164,15 @@ public class ClientConfig {
 		if (minConnectionIdle < 0) {
 			throw new IllegalArgumentException("minConnectionIdle must >= 0: " + minConnectionIdle);
 		}
+		if (pipelineConnections < 0) {
+			throw new IllegalArgumentException("pipelineConnections must >= 0: " + pipelineConnections);
+		}
+		if (pipelineBatchSize < 0) {
+			throw new IllegalArgumentException("pipelineBatchSize must >= 0: " + pipelineBatchSize);
+		}
+		if (pipelineBatchDelay < 0) {
+			throw new IllegalArgumentException("pipelineBatchDelay must >= 0: " + pipelineBatchDelay);
+		}
 	}
 
 	<T> GenericObjectPoolConfig<T> createPoolConfig() {
@@ -187,6 +235,18 @@ public class ClientConfig {
 		return minConnectionIdle;
 	}
 
+	public int getPipelineConnections() {
+		return pipelineConnections;
+	}
+
+	public int getPipelineBatchSize() {
+		return pipelineBatchSize;
+	}
+
+	public int getPipelineBatchDelay() {
+		return pipelineBatchDelay;
+	}
+
 	private static boolean getSsl(URI uri) {
 		String scheme = uri.getScheme();
 		switch (scheme) {
@@ -3,7 +3,6 @@ package pers.zyc.tools.redis.client;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pers.zyc.tools.redis.client.exception.RedisClientException;
-import pers.zyc.tools.redis.client.exception.ResponseIncompleteException;
 import pers.zyc.tools.redis.client.request.server.ClientGetName;
 import pers.zyc.tools.redis.client.request.server.ClientList;
 import pers.zyc.tools.redis.client.request.server.ClientSetName;
@@ -13,6 +12,7 @@ import pers.zyc.tools.redis.client.request.connection.Quit;
 import pers.zyc.tools.redis.client.request.connection.Select;
 import pers.zyc.tools.redis.client.util.Promise;
 import pers.zyc.tools.redis.client.util.ResponsePromise;
+import pers.zyc.tools.utils.SystemMillis;
 import pers.zyc.tools.utils.event.EventListener;
 import pers.zyc.tools.utils.event.*;
 import sun.nio.ch.DirectBuffer;
@@ -22,13 +22,21 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.StringReader;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.*;
-
-import static pers.zyc.tools.redis.client.util.ByteUtil.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Redis连接
+ *
+ * 独占模式下连接从连接池借出后只发送一个请求, 响应、超时、异常通过事件通知连接池, 由连接池响应Promise并回收连接;
+ * 管道模式(pipelined)下连接由多个线程共享, 请求追加到写队列后即返回, 写出后按顺序进入响应队列,
+ * Redis按请求顺序响应, 收到的响应依次匹配响应队列头部的请求, 由连接直接响应Promise
+ *
  * @author zhangyancheng
  */
 class Connection implements EventSource<ConnectionEvent>, Closeable {
@@ -38,6 +46,7 @@ class Connection implements EventSource<ConnectionEvent>, Closeable {
 	private final NetWorker netWorker;
 	private final SocketChannel channel;
 	private final ByteBuffer buffer;
+	private final ByteBuffer writeBuffer;
 	private final Multicaster<EventListener<ConnectionEvent>> multicaster =
 			new Multicaster<EventListener<ConnectionEvent>>() {
 		{
@@ -51,16 +60,42 @@ class Connection implements EventSource<ConnectionEvent>, Closeable {
 		}
 	};
 
+	/**
+	 * 是否为管道模式
+	 */
+	final boolean pipelined;
+
 	boolean allocated;
-	boolean healthy = true;
+	volatile boolean healthy = true;
 
-	private Request<?> request;
-	private byte[] responseBuffer;
-	private int responseBytesCount;
+	/**
+	 * 待写出的请求
+	 */
+	private final Queue<Exchange> writeQueue = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * 已写出, 等待响应的请求(按写出顺序)
+	 */
+	private final Queue<Exchange> respondQueue = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * 自动批量: 最大请求数(0不限制)、最大等待时间(ns, 0不等待)、当前批量中的请求数
+	 */
+	private int batchSize;
+	private long batchDelayNanos;
+	private final AtomicInteger batchedWrites = new AtomicInteger();
+
+	private final RespEncoder encoder;
+	private final RespDecoder decoder = new RespDecoder();
 
 	Connection(SocketChannel channel, NetWorker netWorker) throws IOException {
+		this(channel, netWorker, false);
+	}
+
+	Connection(SocketChannel channel, NetWorker netWorker, boolean pipelined) throws IOException {
 		this.channel = channel;
 		this.netWorker = netWorker;
+		this.pipelined = pipelined;
 
 		try {
 			sk = netWorker.register(channel);
@@ -70,6 +105,9 @@ class Connection implements EventSource<ConnectionEvent>, Closeable {
 			throw e;
 		}
 		buffer = ByteBuffer.allocateDirect(8192);
+		//写buffer使用堆内存, 未写出的数据跨多次写事件保留, 不与读buffer共用
+		writeBuffer = ByteBuffer.allocate(8192);
+		encoder = new RespEncoder(channel, writeBuffer);
 	}
 
 	private static void closeChannel(SocketChannel channel) {
@@ -203,13 +241,56 @@ class Connection implements EventSource<ConnectionEvent>, Closeable {
 	 * @return 响应Future
 	 */
 	<R> Promise<R> send(Request<R> request, Promise<R> promise) {
-		publishEvent(new ConnectionEvent.RequestSet(this, promise));
+		send(new Exchange(request, null, promise));
+		return promise;
+	}
 
-		this.request = request;
-		enableWrite();
+	/**
+	 * 异步发送多个请求, 所有请求一次写出, 全部响应到达后以原始响应列表(未转换, 与请求一一对应)响应promise
+	 *
+	 * @param requests 请求(非空)
+	 * @param promise 响应Promise
+	 */
+	void sendAll(List<Request<?>> requests, Promise<?> promise) {
+		if (requests.isEmpty()) {
+			throw new IllegalArgumentException("No request");
+		}
+		send(new Exchange(requests.get(0), requests, promise));
+	}
 
-		LOGGER.debug("{} set.", request);
-		return promise;
+	private void send(Exchange exchange) {
+		if (!pipelined) {
+			publishEvent(new ConnectionEvent.RequestSet(this, exchange.promise));
+		} else if (!healthy) {
+			if (exchange.request.finish()) {
+				exchange.promise.response(new RedisClientException("Connection broken"));
+			}
+			return;
+		}
+
+		writeQueue.add(exchange);
+		try {
+			if (batchDelayNanos == 0) {
+				enableWrite();
+			} else {
+				int batched = batchedWrites.incrementAndGet();
+				if (batchSize > 0 && batched >= batchSize) {
+					enableWrite();
+				} else if (batched == 1) {
+					//批量中的第一个请求, 到期后由NetWorker写出
+					netWorker.scheduleFlush(this, System.nanoTime() + batchDelayNanos);
+				}
+			}
+		} catch (CancelledKeyException e) {
+			//管道连接已被关闭
+			healthy = false;
+		}
+		if (pipelined && !healthy) {
+			//连接异常时可能已清理过队列, 再次清理保证请求不会遗留
+			failAll(new RedisClientException("Connection broken"));
+		}
+
+		LOGGER.debug("{} set.", exchange.request);
 	}
 
 	private void enableWrite() {
@@ -222,298 +303,262 @@ class Connection implements EventSource<ConnectionEvent>, Closeable {
 	}
 
 	/**
-	 * NetWorker调用, 写出请求, 在Request数据全部写出后才返回
+	 * NetWorker调用, 写出写队列中的所有请求, 发送缓冲满时保留写事件, 可写后继续写出
 	 */
 	void write() {
+		//先取消写事件并结束当前批量再取队列, 取队列之后追加的请求会重新注册写事件或开始新的批量
+		disableWrite();
+		batchedWrites.set(0);
 		try {
-			encodeAndWrite();
-			disableWrite();
-
-			LOGGER.debug("{} send.", this.request);
-			publishEvent(new ConnectionEvent.RequestSend(this));
-		} catch (Exception e) {
-			healthy = false;
-			if (request.finish()) {
-				publishEvent(new ConnectionEvent.ExceptionCaught(this, e));
-			}
-		}
-	}
-
-	/**
-	 * NetWorker调用, 读取响应, 单个响应可能有多次read调用
-	 */
-	void read() {
-		try {
-			Object response = readAndDecode();
-			responseBuffer = null;
-
-			LOGGER.debug("{} Response received.", this.request);
-			if (request.finish()) {
-				publishEvent(new ConnectionEvent.ResponseReceived(this, response));
+			//上次未写完的数据先写出, 写完前不编码新的请求
+			if (encoder.flush()) {
+				Exchange exchange;
+				while ((exchange = writeQueue.poll()) != null) {
+					//先进入响应队列再写出, 保证响应匹配顺序与写出顺序一致
+					respondQueue.add(exchange);
+					if (exchange.requests == null) {
+						encoder.encode(exchange.request);
+					} else {
+						for (Request<?> request : exchange.requests) {
+							encoder.encode(request);
+						}
+					}
+					LOGGER.debug("{} send.", exchange.request);
+				}
+				if (encoder.flush()) {
+					if (!pipelined) {
+						publishEvent(new ConnectionEvent.RequestSend(this));
+					}
+					return;
+				}
 			}
-		} catch (ResponseIncompleteException ignored) {
+			//发送缓冲已满, 当前为NetWorker线程, 不需要唤醒
+			sk.interestOps(sk.interestOps() | SelectionKey.OP_WRITE);
 		} catch (Exception e) {
-			healthy = false;
-			if (!allocated || request.finish()) {
-				publishEvent(new ConnectionEvent.ExceptionCaught(this, e));
-			}
-		}
-	}
-
-	void timeout() {
-		LOGGER.debug("{} timeout.", this.request);
-		healthy = false;
-		if (request.finish()) {
-			publishEvent(new ConnectionEvent.RequestTimeout(this));
+			exceptionCaught(e);
 		}
 	}
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-	//encode and decode
 
 	/**
-	 * 编码并写出请求数据
-	 *
-	 * @throws IOException 网络异常
+	 * NetWorker调用, 自动批量到期后写出
 	 */
-	private void encodeAndWrite() throws IOException {
-		encodeIntCRLF(ASTERISK, request.bulks.size());
-
-
-		byte[] bulk;
-		while ((bulk = request.bulks.poll()) != null) {
-			encodeIntCRLF(DOLLAR, bulk.length);
-
-			int writeIndex = 0;
-			do {
-				need(1);//需要buffer非满
-				int writeLen = Math.min(buffer.remaining(), bulk.length - writeIndex);
-				buffer.put(bulk, writeIndex, writeLen);
-				writeIndex += writeLen;
-				//循环直到bulk数据全部处理
-			} while (writeIndex < bulk.length);
-
-			need(CRLF.length);
-			buffer.put(CRLF);
-		}
-
-		//排空buffer
-		buffer.flip();
-		while (buffer.hasRemaining()) {
-			channel.write(buffer);
+	void flushBatch() {
+		if (sk.isValid()) {
+			write();
 		}
-		buffer.clear();
 	}
 
 	/**
-	 * 写块长度
+	 * 开启管道连接自动批量, 在连接开始共享前设置
 	 *
-	 * @param b 符号
-	 * @param length 长度
-	 * @throws IOException 网络异常
+	 * @param batchSize 最大请求数, 达到后立即写出, 为0时不限制
+	 * @param batchDelay 最大等待时间(ms), 为0时不批量
 	 */
-	private void encodeIntCRLF(byte b, int length) throws IOException {
-		byte[] intByte = toByteArray(length);
-		need(intByte.length + CRLF.length + 1);
-		buffer.put(b);
-		buffer.put(intByte);
-		buffer.put(CRLF);
+	void setAutoBatch(int batchSize, int batchDelay) {
+		this.batchSize = batchSize;
+		this.batchDelayNanos = TimeUnit.MILLISECONDS.toNanos(batchDelay);
 	}
 
 	/**
-	 * buffer处于写模式时, put前确保有足够的剩余可写
-	 *
-	 * @param need 需要写入大小
-	 * @throws IOException 网络异常
+	 * NetWorker调用, 读取响应, 单个响应可能有多次read调用, 单次read也可能读到多个响应
 	 */
-	private void need(int need) throws IOException {
-		while (buffer.remaining() < need) {
-			buffer.flip();
-			channel.write(buffer);
-			buffer.compact();
+	void read() {
+		try {
+			readAndDecode();
+		} catch (Exception e) {
+			exceptionCaught(e);
 		}
 	}
 
 	/**
-	 * 读取响应数据并解码
+	 * 收到一个完整的响应, 匹配响应队列头部的请求
 	 *
-	 * @return 响应
-	 * @throws IOException 网络异常
-	 * @throws ResponseIncompleteException 数据未完整
+	 * @param response 响应
 	 */
-	private Object readAndDecode() throws IOException {
-		if (responseBuffer == null) {
-			responseBuffer = new byte[32];
-			responseBytesCount = 0;
+	private void onResponse(Object response) {
+		Exchange exchange = respondQueue.peek();
+		if (exchange == null) {
+			throw new RedisClientException("Unexpected response: " + response);
 		}
-
-		int read;
-		while ((read = channel.read(buffer)) > 0) {
-			int needCapacity = read + responseBytesCount;
-			if (needCapacity > responseBuffer.length) {
-				responseBuffer = Arrays.copyOf(responseBuffer,
-						Math.max(responseBuffer.length * 2, needCapacity));
-			}
-			//缓存数据复制到response buffer数组, 并累计数组写入位置
-			buffer.flip();
-			buffer.get(responseBuffer, responseBytesCount, read);
-			buffer.clear();
-			responseBytesCount += read;
+		if (!exchange.reply(response)) {
+			//多请求未全部响应
+			return;
 		}
-
-		try {
-			//Redis数据包至少3个字节且必定以\r\n结尾
-			if (responseBytesCount < 3 ||
-				responseBuffer[responseBytesCount - 2] != CR ||
-				responseBuffer[responseBytesCount - 1] != LF) {
-				throw new ResponseIncompleteException("Response packet not end with \\r\\n");
-			}
-
-			return decodeResp(ByteBuffer.wrap(responseBuffer, 0, responseBytesCount));
-		} catch (ResponseIncompleteException rie) {
-			if (read != -1) {
-				throw rie;
-			}
-			//响应数据不完整但流已关闭
-			throw new IOException("Unexpected end of stream");
+		//按对象删除, 管道连接超时断开时其他线程可能已清理队列
+		respondQueue.remove(exchange);
+		LOGGER.debug("{} Response received.", exchange.request);
+		if (!exchange.request.finish()) {
+			//已超时
+			return;
 		}
-	}
-
-	private static Object decodeResp(ByteBuffer byteBuffer) {
-		byte bType = byteBuffer.get();
-		switch (bType) {
-			case PLUS:
-			case MINUS:
-				return readLine(byteBuffer);
-			case COLON:
-				return readInteger(byteBuffer);
-			case DOLLAR:
-				return readBulk(byteBuffer);
-			case ASTERISK:
-				return readMultiBulk(byteBuffer);
-			default:
-				throw new RedisClientException("Unknown reply: " + bType);
+		if (pipelined) {
+			exchange.promise.response(exchange.response);
+		} else {
+			publishEvent(new ConnectionEvent.ResponseReceived(this, exchange.response));
 		}
 	}
 
-
-	private static List<Object> readMultiBulk(ByteBuffer buffer) {
-		int bulks = readLength(buffer);
-
-		if (bulks == -1) {
-			return null;
+	private void exceptionCaught(Exception e) {
+		healthy = false;
+		if (pipelined) {
+			failAll(e);
+			publishEvent(new ConnectionEvent.ExceptionCaught(this, e));
+			return;
 		}
-
-		List<Object> ret = new ArrayList<>(bulks);
-		if (bulks == 0) {
-			return ret;
+		Exchange exchange = current();
+		if (!allocated || (exchange != null && exchange.request.finish())) {
+			publishEvent(new ConnectionEvent.ExceptionCaught(this, e));
 		}
+	}
 
-		skipCRLF(buffer);
-
-		while (buffer.hasRemaining()) {
-			ret.add(decodeResp(buffer));
+	/**
+	 * 独占模式下当前的请求
+	 */
+	private Exchange current() {
+		Exchange exchange = respondQueue.peek();
+		return exchange != null ? exchange : writeQueue.peek();
+	}
 
-			if (buffer.hasRemaining()) {
-				skipCRLF(buffer);
+	/**
+	 * 管道连接异常, 结束所有未完成的请求
+	 *
+	 * @param cause 异常
+	 */
+	private void failAll(Exception cause) {
+		Exchange exchange;
+		while ((exchange = respondQueue.poll()) != null || (exchange = writeQueue.poll()) != null) {
+			if (exchange.request.finish()) {
+				exchange.promise.response(cause);
 			}
 		}
-
-		if (ret.size() == bulks) {
-			return ret;
-		}
-
-		throw new ResponseIncompleteException("MultiBulk expect " + bulks + " bulk, but received " + ret.size());
 	}
 
-	private static byte[] readBulk(ByteBuffer buffer) {
-		int bulkLen = readLength(buffer);
-
-		skipCRLF(buffer);
-
-		if (!buffer.hasRemaining()) {
-			if (bulkLen == -1) {
-				return null;
-			} else {
-				throw new ResponseIncompleteException("Bulk data deficiency");
-			}
+	/**
+	 * 独占连接请求超时
+	 */
+	void timeout() {
+		Exchange exchange = current();
+		LOGGER.debug("{} timeout.", exchange == null ? null : exchange.request);
+		healthy = false;
+		if (exchange != null && exchange.request.finish()) {
+			publishEvent(new ConnectionEvent.RequestTimeout(this));
 		}
-
-		//一定可以读取contentLen长度的内容
-		return getContentByte(buffer, bulkLen);
 	}
 
 	/**
-	 * 读状态
+	 * 管道连接请求超时检查, 未写出的超时请求仍保留在队列中占位, 写出后其响应到达时丢弃;
+	 * 响应队列头部(最早写出)的请求超时仍未响应时认为连接(或者服务端)已异常, 标记为不健康并结束所有请求,
+	 * 连接关闭后在下次获取时重建
 	 *
-	 * @param buffer 响应buffer
-	 * @return 状态字符串
+	 * @param requestTimeout 请求超时时间
 	 */
-	private static String readLine(ByteBuffer buffer) {
-		return bytesToString(getContentByte(buffer, buffer.remaining() - 2));
+	void expire(int requestTimeout) {
+		long expireTime = SystemMillis.current() - requestTimeout;
+		Exchange head = respondQueue.peek();
+		if (head != null && head.createTime <= expireTime) {
+			LOGGER.debug("{} no response in {}ms, {} broken", head.request, requestTimeout, this);
+			expire(respondQueue, expireTime);
+			exceptionCaught(new RedisClientException("Connection broken, response timeout"));
+			return;
+		}
+		expire(writeQueue, expireTime);
 	}
 
-	private static int readLength(ByteBuffer buffer) {
-		return bytesToLong(getLongByte(buffer)).intValue();
+	private static void expire(Queue<Exchange> queue, long expireTime) {
+		for (Exchange exchange : queue) {
+			if (exchange.createTime > expireTime) {
+				//队列按请求时间排序
+				return;
+			}
+			if (exchange.request.finish()) {
+				LOGGER.debug("{} timeout.", exchange.request);
+				exchange.promise.response(new RedisClientException("Request timeout!"));
+			}
+		}
 	}
 
 	/**
-	 * 读整数
-	 *
-	 * @param buffer 响应buffer
-	 * @return 整数
+	 * @return 是否所有请求都已结束
 	 */
-	private static long readInteger(ByteBuffer buffer) {
-		return bytesToLong(getLongByte(buffer));
+	boolean isIdle() {
+		for (Exchange exchange : writeQueue) {
+			if (!exchange.request.isFinished()) {
+				return false;
+			}
+		}
+		for (Exchange exchange : respondQueue) {
+			if (!exchange.request.isFinished()) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
-	 * 读取块长度
-	 *
-	 * @param buffer 响应buffer
-	 * @return 块长度字节
+	 * 请求及其响应Promise, 多个请求一起发送时以第一个请求的结束状态为准
 	 */
-	private static byte[] getLongByte(ByteBuffer buffer) {
-		int len = 0;
-
-		//先标记位置, 读到\r\n后重置, 累计的长度即为块长度的字节数
-		buffer.mark();
-		while (buffer.get() != CR) {
-			len++;
+	private static class Exchange {
+		final Request<?> request;
+		final List<Request<?>> requests;
+		final Promise<?> promise;
+		final long createTime = SystemMillis.current();
+
+		/**
+		 * 响应, 多个请求时为响应列表
+		 */
+		Object response;
+
+		Exchange(Request<?> request, List<Request<?>> requests, Promise<?> promise) {
+			this.request = request;
+			this.requests = requests;
+			this.promise = promise;
 		}
-		byte lf = buffer.get(); assert lf == LF;
-		buffer.reset();
 
-		return getContentByte(buffer, len);
+		/**
+		 * 收到一个响应
+		 *
+		 * @param reply 响应
+		 * @return 是否已全部响应
+		 */
+		@SuppressWarnings("unchecked")
+		boolean reply(Object reply) {
+			if (requests == null) {
+				response = reply;
+				return true;
+			}
+			if (response == null) {
+				response = new ArrayList<>(requests.size());
+			}
+			List<Object> replies = (List<Object>) response;
+			replies.add(reply);
+			return replies.size() == requests.size();
+		}
 	}
 
-	private static byte[] getContentByte(ByteBuffer buffer, int len) {
-		byte[] ret = new byte[len];
-		buffer.get(ret, 0, len);
-		return ret;
-	}
+	//encode and decode
+
+	/**
+	 * 读取响应数据并解码, 每解码出一个完整响应调用一次{@link #onResponse(Object)},
+	 * 不完整响应的解析状态保存在解码器中, 下次读取后继续
+	 *
+	 * @throws IOException 网络异常
+	 */
+	private void readAndDecode() throws IOException {
+		int read;
+		while ((read = channel.read(buffer)) > 0) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				Object response = decoder.decode(buffer);
+				if (response == RespDecoder.INCOMPLETE) {
+					break;
+				}
+				onResponse(response);
+			}
+			buffer.clear();
+		}
 
-	private static void skipCRLF(ByteBuffer buffer) {
-		byte cr = buffer.get(), lf = buffer.get();
-		assert cr == CR; assert lf == LF;
+		if (read == -1) {
+			throw new IOException(decoder.isDecoding() ? "Unexpected end of stream" : "Connection closed by peer");
+		}
 	}
 }
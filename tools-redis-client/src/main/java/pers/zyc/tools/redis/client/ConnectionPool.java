@@ -22,8 +22,17 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
+ * 连接池
+ *
+ * 默认为独占模式, 每个请求从池中借出一个连接, 响应后归还;
+ * 配置了管道连接数({@link ClientConfig#getPipelineConnections()})时, 每个NetWorker上固定创建若干管道连接,
+ * 所有请求轮询共享这些连接, 连接异常时在下次获取时重建。管道连接可开启自动批量
+ * ({@link ClientConfig#getPipelineBatchDelay()}), 一段时间内的请求合并为一次写出
+ *
  * @author zhangyancheng
  */
 class ConnectionPool extends ThreadService implements EventListener<ConnectionEvent>, PooledObjectFactory<Connection> {
@@ -34,9 +43,17 @@ class ConnectionPool extends ThreadService implements EventListener<ConnectionEv
 	private final GenericObjectPool<Connection> pool;
 	private final ConcurrentMap<Connection, ResponsePromise<?>> requestingMap = new ConcurrentHashMap<>();
 
+	/**
+	 * 管道连接, 独占模式时为null
+	 */
+	private final AtomicReferenceArray<Connection> pipelinedConnections;
+	private final AtomicInteger pipelineIndexer = new AtomicInteger();
+
 	ConnectionPool(ClientConfig config) {
 		this.config = config;
 		netWorkGroup = new NetWorkGroup(config.getNetWorkers());
+		pipelinedConnections = config.getPipelineConnections() > 0 ?
+				new AtomicReferenceArray<Connection>(config.getPipelineConnections() * config.getNetWorkers()) : null;
 
 		pool = new GenericObjectPool<>(this, config.<Connection>createPoolConfig());
 		start();
@@ -46,7 +63,11 @@ class ConnectionPool extends ThreadService implements EventListener<ConnectionEv
 	protected void doStart() throws Exception {
 		netWorkGroup.start();
 
-		if (config.isNeedPreparePool()) {
+		if (pipelinedConnections != null) {
+			for (int i = 0; i < pipelinedConnections.length(); i++) {
+				pipelinedConnections.set(i, createPipelinedConnection(i));
+			}
+		} else if (config.isNeedPreparePool()) {
 			pool.preparePool();
 		}
 		pool.setSwallowedExceptionListener(new SwallowedExceptionListener() {
@@ -65,6 +86,9 @@ class ConnectionPool extends ThreadService implements EventListener<ConnectionEv
 			//等待一个超时清理周期, 则所有请求必定都结束了
 			TimeUnit.MILLISECONDS.sleep(config.getRequestTimeoutDetectInterval());
 		}
+		if (pipelinedConnections != null) {
+			closePipelinedConnections();
+		}
 		netWorkGroup.stop();
 		super.doStop();
 	}
@@ -85,6 +109,14 @@ class ConnectionPool extends ThreadService implements EventListener<ConnectionEv
 						entry.getKey().timeout();
 					}
 				}
+				if (pipelinedConnections != null) {
+					for (int i = 0; i < pipelinedConnections.length(); i++) {
+						Connection connection = pipelinedConnections.get(i);
+						if (connection != null) {
+							connection.expire(config.getRequestTimeout());
+						}
+					}
+				}
 			}
 		};
 	}
@@ -94,6 +126,9 @@ class ConnectionPool extends ThreadService implements EventListener<ConnectionEv
 	}
 
 	Connection getConnection() {
+		if (pipelinedConnections != null) {
+			return getPipelinedConnection();
+		}
 		try {
 			Connection connection = pool.borrowObject();
 			connection.allocated = true;
@@ -103,6 +138,80 @@ class ConnectionPool extends ThreadService implements EventListener<ConnectionEv
 		}
 	}
 
+	/**
+	 * 借出独占连接, 连接在{@link #returnConnection(Connection)}前不会在响应后自动回收,
+	 * 用于需要在同一连接上依次发送多个请求的场景(如事务), 请求需在上一个请求响应后再发送
+	 *
+	 * @return 独占连接
+	 */
+	Connection borrowConnection() {
+		try {
+			return pool.borrowObject();
+		} catch (Exception e) {
+			throw new RedisClientException("Could not get a connection from the pool", e);
+		}
+	}
+
+	/**
+	 * 归还借出的独占连接, 连接异常时销毁
+	 *
+	 * @param connection 独占连接
+	 */
+	void returnConnection(Connection connection) {
+		recycleConnection(connection, !connection.healthy);
+	}
+
+	/**
+	 * 轮询获取管道连接, 连接异常时重建
+	 *
+	 * @return 管道连接
+	 */
+	private Connection getPipelinedConnection() {
+		int index = (pipelineIndexer.getAndIncrement() & Integer.MAX_VALUE) % pipelinedConnections.length();
+		Connection connection = pipelinedConnections.get(index);
+		if (connection != null && connection.healthy) {
+			return connection;
+		}
+		synchronized (pipelinedConnections) {
+			connection = pipelinedConnections.get(index);
+			if (connection == null || !connection.healthy) {
+				try {
+					connection = createPipelinedConnection(index);
+				} catch (Exception e) {
+					throw new RedisClientException("Could not create a pipelined connection", e);
+				}
+				pipelinedConnections.set(index, connection);
+			}
+			return connection;
+		}
+	}
+
+	/**
+	 * 等待管道连接上的请求结束后关闭连接
+	 *
+	 * @throws InterruptedException 等待时线程被中断
+	 */
+	private void closePipelinedConnections() throws InterruptedException {
+		for (int i = 0; i < pipelinedConnections.length(); i++) {
+			Connection connection = pipelinedConnections.getAndSet(i, null);
+			if (connection == null) {
+				continue;
+			}
+			//超时检查线程保证所有请求最终结束
+			while (connection.healthy && !connection.isIdle()) {
+				TimeUnit.MILLISECONDS.sleep(config.getRequestTimeoutDetectInterval());
+			}
+			if (connection.healthy) {
+				try {
+					connection.quit();
+				} catch (Exception e) {
+					LOGGER.warn("Quit {} failed: {}", connection, e.getMessage());
+				}
+			}
+			connection.close();
+		}
+	}
+
 	private void recycleConnection(Connection connection, boolean invalid) {
 		if (invalid) {
 			try {
@@ -119,6 +228,15 @@ class ConnectionPool extends ThreadService implements EventListener<ConnectionEv
 		final Connection connection = event.getSource();
 		final Object response;
 
+		if (connection.pipelined) {
+			//管道连接由连接自身响应请求, 连接异常时关闭, 下次获取时重建
+			if (event.eventType == ConnectionEvent.EventType.EXCEPTION_CAUGHT) {
+				LOGGER.warn("{} broken: {}", connection, ((Exception) event.payload()).getMessage());
+				connection.close();
+			}
+			return;
+		}
+
 		switch (event.eventType) {
 			case REQUEST_SET:
 				requestingMap.put(connection, (ResponsePromise<?>) event.payload());
@@ -151,11 +269,21 @@ class ConnectionPool extends ThreadService implements EventListener<ConnectionEv
 
 	@Override
 	public PooledObject<Connection> makeObject() throws Exception {
+		return new DefaultPooledObject<>(createConnection(netWorkGroup.next(), false));
+	}
+
+	private Connection createPipelinedConnection(int index) throws Exception {
+		Connection connection = createConnection(netWorkGroup.get(index), true);
+		connection.setAutoBatch(config.getPipelineBatchSize(), config.getPipelineBatchDelay());
+		return connection;
+	}
+
+	private Connection createConnection(NetWorker netWorker, boolean pipelined) throws Exception {
 		if (netWorkGroup.inNetworking()) {
 			throw new RedisClientException("Can't create connection in networking!");
 		}
 		SocketChannel channel = createChannel(config.getHost(), config.getPort(), config.getConnectionTimeout());
-		Connection connection = new Connection(channel, netWorkGroup.next());
+		Connection connection = new Connection(channel, netWorker, pipelined);
 		connection.addListener(this);
 		try {
 			if (config.getPassword() != null) {
@@ -165,7 +293,7 @@ class ConnectionPool extends ThreadService implements EventListener<ConnectionEv
 				connection.selectDb(config.getDb());
 			}
 			LOGGER.debug("Created new {}", connection);
-			return new DefaultPooledObject<>(connection);
+			return connection;
 		} catch (Exception e) {
 			connection.close();
 			throw e;
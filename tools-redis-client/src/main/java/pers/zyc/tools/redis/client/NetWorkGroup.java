@@ -48,7 +48,7 @@ class NetWorkGroup extends Service {
 				NetWorker netWorker = new NetWorker();
 				netWorker.setThreadFactory(threadFactory);
 				netWorker.start();
-				this.netWorkers[i++] = netWorker;
+				this.netWorkers[i] = netWorker;
 			}
 		} catch (IOException e) {
 			closeWorkers(this.netWorkers);
@@ -65,6 +65,10 @@ class NetWorkGroup extends Service {
 		return netWorkers[chooseIndexer.getAndIncrement() % netWorkers.length];
 	}
 
+	NetWorker get(int index) {
+		return netWorkers[index % netWorkers.length];
+	}
+
 	boolean inNetworking() {
 		return match(Thread.currentThread()) != null;
 	}
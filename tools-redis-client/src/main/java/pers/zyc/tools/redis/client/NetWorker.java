@@ -12,7 +12,10 @@ import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -24,6 +27,11 @@ class NetWorker extends ThreadService {
 	private final Selector selector = Selector.open();
 	private final AtomicBoolean wakeUp = new AtomicBoolean();
 
+	/**
+	 * 待写出的自动批量, 按到期时间排序(批量等待时间相同)
+	 */
+	private final Queue<ScheduledFlush> scheduledFlushes = new ConcurrentLinkedQueue<>();
+
 	NetWorker() throws IOException {
 	}
 
@@ -49,7 +57,7 @@ class NetWorker extends ThreadService {
 	}
 
 	private void select() throws InterruptedException, IOException {
-		List<SelectionKey> selected = doSelect();
+		List<SelectionKey> selected = doSelect(selectTimeout());
 
 		for (SelectionKey sk : selected) {
 			try {
@@ -68,12 +76,60 @@ class NetWorker extends ThreadService {
 				LOGGER.error("Connection read/write error: ", e.getMessage());
 			}
 		}
+		flushBatches();
+	}
+
+	/**
+	 * @return 等待时间(ms), 有已到期的批量时为0
+	 */
+	private long selectTimeout() {
+		ScheduledFlush scheduledFlush = scheduledFlushes.peek();
+		if (scheduledFlush == null) {
+			return 1000;
+		}
+		long remaining = scheduledFlush.deadline - System.nanoTime();
+		return remaining <= 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining));
+	}
+
+	/**
+	 * 写出已到期的批量
+	 */
+	private void flushBatches() {
+		long now = System.nanoTime();
+		ScheduledFlush scheduledFlush;
+		while ((scheduledFlush = scheduledFlushes.peek()) != null && scheduledFlush.deadline - now <= 0) {
+			scheduledFlushes.poll();
+			try {
+				scheduledFlush.connection.flushBatch();
+			} catch (Exception e) {
+				LOGGER.error("Connection flush error: ", e.getMessage());
+			}
+		}
 	}
 
-	private List<SelectionKey> doSelect() throws InterruptedException, IOException {
+	/**
+	 * 登记自动批量写出
+	 *
+	 * @param connection 连接
+	 * @param deadline 到期时间(System.nanoTime)
+	 */
+	void scheduleFlush(Connection connection, long deadline) {
+		ScheduledFlush scheduledFlush = new ScheduledFlush(connection, deadline);
+		scheduledFlushes.add(scheduledFlush);
+		if (scheduledFlushes.peek() == scheduledFlush) {
+			//最早到期, 唤醒选择器重新计算等待时间
+			wakeUp();
+		}
+	}
+
+	private List<SelectionKey> doSelect(long timeout) throws InterruptedException, IOException {
 		List<SelectionKey> selected = new ArrayList<>();
 		try {
-			selector.select(1000);
+			if (timeout > 0) {
+				selector.select(timeout);
+			} else {
+				selector.selectNow();
+			}
 
 			if (!isRunning()) {
 				return selected;
@@ -114,4 +170,14 @@ class NetWorker extends ThreadService {
 			selector.wakeup();
 		}
 	}
+
+	private static class ScheduledFlush {
+		final Connection connection;
+		final long deadline;
+
+		ScheduledFlush(Connection connection, long deadline) {
+			this.connection = connection;
+			this.deadline = deadline;
+		}
+	}
 }
@@ -0,0 +1,106 @@
+package pers.zyc.tools.redis.client;
+
+import pers.zyc.tools.redis.client.util.Future;
+import pers.zyc.tools.redis.client.util.ResponsePromise;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 管道, 多个命令在同一连接上一次写出, 只有一次网络往返
+ *
+ * 通过{@link #add(Request)}加入命令(可使用所有请求类, 如Get、HSet、SAdd), 每个命令返回各自的Future,
+ * {@link #execute()}后所有命令一次写出, 全部响应到达后各命令的Future结束。
+ * 管道中的命令不是原子执行的, 需要原子执行时使用{@link Transaction}
+ *
+ * 非线程安全, 每个管道只能执行一次
+ *
+ * @author zhangyancheng
+ */
+public class Pipeline {
+	private final ConnectionPool connectionPool;
+	private final List<Request<?>> requests = new ArrayList<>();
+	private final List<ResponsePromise<?>> promises = new ArrayList<>();
+	private boolean executed;
+
+	Pipeline(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+	}
+
+	/**
+	 * 加入命令
+	 *
+	 * @param request 请求
+	 * @param <R> 响应泛型
+	 * @return 命令响应Future, 执行后响应到达时结束
+	 */
+	public <R> Future<R> add(Request<R> request) {
+		if (executed) {
+			throw new IllegalStateException("Pipeline executed");
+		}
+		ResponsePromise<R> promise = new ResponsePromise<>(request.getCast());
+		requests.add(request);
+		promises.add(promise);
+		return promise;
+	}
+
+	/**
+	 * @return 命令数
+	 */
+	public int size() {
+		return requests.size();
+	}
+
+	/**
+	 * 一次写出所有命令
+	 *
+	 * @return 所有命令结束的Future, 连接异常或者超时时抛出异常(命令执行失败不抛出, 由命令自身的Future抛出)
+	 */
+	public Future<Void> execute() {
+		if (executed) {
+			throw new IllegalStateException("Pipeline executed");
+		}
+		executed = true;
+
+		ResponsePromise<Void> promise = new BatchPromise(promises);
+		if (requests.isEmpty()) {
+			promise.response(new ArrayList<>(0));
+		} else {
+			connectionPool.getConnection().sendAll(requests, promise);
+		}
+		return promise;
+	}
+
+	/**
+	 * 多个命令的Promise, 响应列表逐个转交给各命令, 异常时所有命令异常
+	 */
+	static class BatchPromise extends ResponsePromise<Void> {
+		private final List<ResponsePromise<?>> promises;
+
+		BatchPromise(final List<ResponsePromise<?>> promises) {
+			super(new ResponseCast<Void>() {
+
+				@Override
+				public Void cast(Object response) {
+					List<?> replies = (List<?>) response;
+					for (int i = 0; i < promises.size(); i++) {
+						promises.get(i).response(replies.get(i));
+					}
+					return null;
+				}
+			});
+			this.promises = promises;
+		}
+
+		@Override
+		protected void onRespond() {
+			if (response instanceof Throwable) {
+				for (ResponsePromise<?> promise : promises) {
+					if (promise.getCount() > 0) {
+						promise.response(response);
+					}
+				}
+			}
+		}
+	}
+}
@@ -45,6 +45,13 @@ public abstract class Request<R> {
 		return !finished.get() && finished.compareAndSet(false, true);
 	}
 
+	/**
+	 * @return 请求是否已结束
+	 */
+	boolean isFinished() {
+		return finished.get();
+	}
+
 	/**
 	 * @return 获取响应转换器
 	 */
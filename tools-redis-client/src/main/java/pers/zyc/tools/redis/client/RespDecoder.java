@@ -0,0 +1,235 @@
+package pers.zyc.tools.redis.client;
+
+import pers.zyc.tools.redis.client.exception.RedisClientException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import static pers.zyc.tools.redis.client.util.ByteUtil.*;
+
+/**
+ * 可恢复的RESP响应解码器(状态机)
+ *
+ * 每次解码消费buffer中所有可用数据, 响应不完整时保存解析状态(当前行、已读取的块数据、未完成的多块层级),
+ * 下次读取到数据后从断点继续, 已消费的数据不会再次扫描, 也不依赖异常判断数据是否完整
+ *
+ * 解码结果类型: 状态与错误为String, 整数为Long, 块为byte[], 多块为List, 空块与空多块为null
+ *
+ * 非线程安全, 只在连接所属的NetWorker线程中使用
+ *
+ * @author zhangyancheng
+ */
+class RespDecoder {
+
+	/**
+	 * 数据不完整, 需要继续读取
+	 */
+	static final Object INCOMPLETE = new Object();
+
+	/**
+	 * 当前值未结束(块长度、多块长度已读取, 等待后续数据)
+	 */
+	private static final Object PENDING = new Object();
+
+	private static final int STATE_TYPE = 0;
+	private static final int STATE_LINE = 1;
+	private static final int STATE_BULK = 2;
+	private static final int STATE_BULK_CRLF = 3;
+
+	private int state = STATE_TYPE;
+
+	/**
+	 * 当前值的类型符号
+	 */
+	private byte type;
+
+	/**
+	 * 当前行(含读取到的\r)
+	 */
+	private byte[] line = new byte[64];
+	private int lineLength;
+
+	/**
+	 * 当前块及已读取的字节数
+	 */
+	private byte[] bulk;
+	private int bulkIndex;
+	private int crlfRemaining;
+
+	/**
+	 * 未完成的多块, 栈顶为最内层
+	 */
+	private final Deque<MultiBulk> multiBulks = new ArrayDeque<>();
+
+	/**
+	 * 从buffer(读模式)中解码一个响应
+	 *
+	 * @param buffer 响应数据
+	 * @return 响应, 数据不完整时返回{@link #INCOMPLETE}(此时buffer中的数据已全部消费)
+	 * @throws RedisClientException 响应格式错误
+	 */
+	Object decode(ByteBuffer buffer) {
+		while (buffer.hasRemaining()) {
+			Object value;
+			switch (state) {
+				case STATE_TYPE:
+					type = buffer.get();
+					if (type != PLUS && type != MINUS && type != COLON && type != DOLLAR && type != ASTERISK) {
+						throw new RedisClientException("Unknown reply: " + type);
+					}
+					lineLength = 0;
+					state = STATE_LINE;
+					continue;
+				case STATE_LINE:
+					if (!readLine(buffer)) {
+						return INCOMPLETE;
+					}
+					value = lineCompleted();
+					break;
+				case STATE_BULK:
+					int len = Math.min(buffer.remaining(), bulk.length - bulkIndex);
+					buffer.get(bulk, bulkIndex, len);
+					bulkIndex += len;
+					if (bulkIndex == bulk.length) {
+						state = STATE_BULK_CRLF;
+					}
+					continue;
+				case STATE_BULK_CRLF:
+					//块长度错误时后续响应全部错位, 抛出异常断开连接
+					if (buffer.get() != CRLF[CRLF.length - crlfRemaining]) {
+						throw new RedisClientException("Protocol error, bulk not terminated by CRLF");
+					}
+					if (--crlfRemaining > 0) {
+						continue;
+					}
+					value = bulk;
+					bulk = null;
+					state = STATE_TYPE;
+					break;
+				default:
+					throw new IllegalStateException("state: " + state);
+			}
+
+			if (value != PENDING && (value = valueCompleted(value)) != PENDING) {
+				return value;
+			}
+		}
+		return INCOMPLETE;
+	}
+
+	/**
+	 * @return 是否有未解码完成的响应
+	 */
+	boolean isDecoding() {
+		return state != STATE_TYPE || !multiBulks.isEmpty();
+	}
+
+	/**
+	 * 读取到\r\n为止
+	 *
+	 * @param buffer 响应数据
+	 * @return 是否读取到完整的行
+	 */
+	private boolean readLine(ByteBuffer buffer) {
+		while (buffer.hasRemaining()) {
+			byte b = buffer.get();
+			if (b == LF && lineLength > 0 && line[lineLength - 1] == CR) {
+				lineLength--;
+				return true;
+			}
+			if (lineLength == line.length) {
+				line = Arrays.copyOf(line, line.length * 2);
+			}
+			line[lineLength++] = b;
+		}
+		return false;
+	}
+
+	/**
+	 * 行读取完成
+	 *
+	 * @return 值, 块与非空多块返回{@link #PENDING}
+	 */
+	private Object lineCompleted() {
+		state = STATE_TYPE;
+		switch (type) {
+			case PLUS:
+			case MINUS:
+				return new String(line, 0, lineLength, UTF8);
+			case COLON:
+				return parseLong();
+			case DOLLAR:
+				int bulkLength = (int) parseLong();
+				if (bulkLength < 0) {
+					return null;
+				}
+				bulk = new byte[bulkLength];
+				bulkIndex = 0;
+				crlfRemaining = CRLF.length;
+				state = bulkLength == 0 ? STATE_BULK_CRLF : STATE_BULK;
+				return PENDING;
+			default:
+				int bulks = (int) parseLong();
+				if (bulks < 0) {
+					return null;
+				}
+				if (bulks == 0) {
+					return new ArrayList<>(0);
+				}
+				multiBulks.push(new MultiBulk(bulks));
+				return PENDING;
+		}
+	}
+
+	/**
+	 * 值解码完成, 加入所属的多块
+	 *
+	 * @param value 值
+	 * @return 完整的响应, 所属多块未完成时返回{@link #PENDING}
+	 */
+	private Object valueCompleted(Object value) {
+		while (!multiBulks.isEmpty()) {
+			MultiBulk multiBulk = multiBulks.peek();
+			multiBulk.values.add(value);
+			if (multiBulk.values.size() < multiBulk.size) {
+				return PENDING;
+			}
+			multiBulks.pop();
+			value = multiBulk.values;
+		}
+		return value;
+	}
+
+	private long parseLong() {
+		if (lineLength == 0) {
+			throw new RedisClientException("Empty integer reply");
+		}
+		boolean negative = line[0] == '-';
+		long value = 0;
+		for (int i = negative ? 1 : 0; i < lineLength; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new RedisClientException("Illegal integer reply: " + new String(line, 0, lineLength, UTF8));
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * 未完成的多块
+	 */
+	private static class MultiBulk {
+		final int size;
+		final List<Object> values;
+
+		MultiBulk(int size) {
+			this.size = size;
+			this.values = new ArrayList<>(size);
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package pers.zyc.tools.redis.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+import static pers.zyc.tools.redis.client.util.ByteUtil.*;
+
+/**
+ * RESP请求编码器
+ *
+ * 连续编码多个请求(管道)后一次写出: 长度前缀与小块复制到连接的写buffer,
+ * 大块({@link #GATHER_THRESHOLD}字节以上)不复制, 包装为buffer片段, 与写buffer片段按顺序聚集写出(gathering write)。
+ * 小整数的长度前缀("*n\r\n"、"$n\r\n")预先编码缓存, 其他长度直接写入数字, 不生成临时字符串
+ *
+ * 编码过程不写网络, 写buffer写满后续写到临时buffer; 写出时发送缓冲满则保留未写出的片段,
+ * 由连接保持写事件, 可写时继续写出, 不在非阻塞通道上自旋
+ *
+ * 非线程安全, 只在连接所属的NetWorker线程中使用
+ *
+ * @author zhangyancheng
+ */
+class RespEncoder {
+
+	/**
+	 * 大于等于此长度的块不复制, 直接聚集写出
+	 */
+	static final int GATHER_THRESHOLD = 1024;
+
+	/**
+	 * 缓存的长度前缀范围[0, PREFIX_CACHE_SIZE)
+	 */
+	private static final int PREFIX_CACHE_SIZE = 1024;
+	private static final byte[][] MULTI_BULK_PREFIXES = createPrefixes(ASTERISK);
+	private static final byte[][] BULK_PREFIXES = createPrefixes(DOLLAR);
+
+	/**
+	 * 长度前缀最大字节数(符号 + int最大位数 + \r\n)
+	 */
+	private static final int MAX_PREFIX_LENGTH = 1 + 10 + 2;
+
+	/**
+	 * 写buffer写满后临时buffer的最小大小
+	 */
+	private static final int OVERFLOW_BUFFER_SIZE = 8192;
+
+	private final SocketChannel channel;
+
+	/**
+	 * 连接的写buffer
+	 */
+	private final ByteBuffer writeBuffer;
+
+	/**
+	 * 当前写入的buffer, 写buffer或者写满后的临时buffer
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * 待写出的片段, [segmentOffset, segmentCount)为未写出的部分
+	 */
+	private ByteBuffer[] segments = new ByteBuffer[16];
+	private int segmentCount;
+	private int segmentOffset;
+
+	/**
+	 * buffer中未加入片段的数据起始位置
+	 */
+	private int segmentStart;
+
+	/**
+	 * @param channel 连接通道
+	 * @param buffer 写buffer(写模式, 空), 只由编码器使用
+	 */
+	RespEncoder(SocketChannel channel, ByteBuffer buffer) {
+		this.channel = channel;
+		this.writeBuffer = buffer;
+		this.buffer = buffer;
+	}
+
+	/**
+	 * 编码请求
+	 *
+	 * @param request 请求
+	 */
+	void encode(Request<?> request) {
+		writePrefix(MULTI_BULK_PREFIXES, ASTERISK, request.bulks.size());
+
+		for (byte[] bulk : request.bulks) {
+			writePrefix(BULK_PREFIXES, DOLLAR, bulk.length);
+
+			if (bulk.length >= GATHER_THRESHOLD) {
+				addSegment(ByteBuffer.wrap(bulk));
+				need(CRLF.length);
+			} else {
+				need(bulk.length + CRLF.length);
+				buffer.put(bulk);
+			}
+			buffer.put(CRLF);
+		}
+	}
+
+	/**
+	 * 写出已编码的数据, 直到全部写出或者发送缓冲已满
+	 *
+	 * @return 是否已全部写出, 为false时需在通道可写后再次调用
+	 * @throws IOException 网络异常
+	 */
+	boolean flush() throws IOException {
+		closeSegment();
+		while (segmentOffset < segmentCount) {
+			long written = channel.write(segments, segmentOffset, segmentCount - segmentOffset);
+			while (segmentOffset < segmentCount && !segments[segmentOffset].hasRemaining()) {
+				segments[segmentOffset++] = null;
+			}
+			if (written == 0 && segmentOffset < segmentCount) {
+				//发送缓冲已满
+				return false;
+			}
+		}
+		segmentCount = 0;
+		segmentOffset = 0;
+		segmentStart = 0;
+		buffer = writeBuffer;
+		buffer.clear();
+		return true;
+	}
+
+	private void writePrefix(byte[][] cachedPrefixes, byte symbol, int length) {
+		if (length < PREFIX_CACHE_SIZE) {
+			byte[] prefix = cachedPrefixes[length];
+			need(prefix.length);
+			buffer.put(prefix);
+			return;
+		}
+		need(MAX_PREFIX_LENGTH);
+		buffer.put(symbol);
+		int start = buffer.position();
+		int digits = 1;
+		for (int i = length; i >= 10; i /= 10) {
+			digits++;
+		}
+		for (int i = digits - 1, value = length; i >= 0; i--, value /= 10) {
+			buffer.put(start + i, (byte) ('0' + value % 10));
+		}
+		buffer.position(start + digits);
+		buffer.put(CRLF);
+	}
+
+	/**
+	 * 确保buffer有足够的剩余空间, 不足时已写入的数据作为片段, 之后写入新的临时buffer
+	 *
+	 * @param need 需要写入大小
+	 */
+	private void need(int need) {
+		if (buffer.remaining() < need) {
+			closeSegment();
+			buffer = ByteBuffer.allocate(Math.max(OVERFLOW_BUFFER_SIZE, need));
+			segmentStart = 0;
+		}
+	}
+
+	/**
+	 * buffer中已写入的数据作为一个片段
+	 */
+	private void closeSegment() {
+		if (buffer.position() > segmentStart) {
+			ByteBuffer segment = buffer.duplicate();
+			segment.position(segmentStart).limit(buffer.position());
+			segmentStart = buffer.position();
+			appendSegment(segment);
+		}
+	}
+
+	private void addSegment(ByteBuffer segment) {
+		closeSegment();
+		appendSegment(segment);
+	}
+
+	private void appendSegment(ByteBuffer segment) {
+		if (segmentCount == segments.length) {
+			segments = Arrays.copyOf(segments, segmentCount * 2);
+		}
+		segments[segmentCount++] = segment;
+	}
+
+	private static byte[][] createPrefixes(byte symbol) {
+		byte[][] prefixes = new byte[PREFIX_CACHE_SIZE][];
+		for (int i = 0; i < PREFIX_CACHE_SIZE; i++) {
+			byte[] digits = toByteArray(i);
+			byte[] prefix = new byte[1 + digits.length + CRLF.length];
+			prefix[0] = symbol;
+			System.arraycopy(digits, 0, prefix, 1, digits.length);
+			System.arraycopy(CRLF, 0, prefix, 1 + digits.length, CRLF.length);
+			prefixes[i] = prefix;
+		}
+		return prefixes;
+	}
+}
@@ -0,0 +1,200 @@
+package pers.zyc.tools.redis.client;
+
+import pers.zyc.tools.redis.client.exception.RedisClientException;
+import pers.zyc.tools.redis.client.exception.ServerRespondException;
+import pers.zyc.tools.redis.client.request.transaction.Exec;
+import pers.zyc.tools.redis.client.request.transaction.Multi;
+import pers.zyc.tools.redis.client.request.transaction.Unwatch;
+import pers.zyc.tools.redis.client.request.transaction.Watch;
+import pers.zyc.tools.redis.client.util.Future;
+import pers.zyc.tools.redis.client.util.ResponsePromise;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 事务(MULTI/EXEC), 从连接池借出一个独占连接, 关闭时归还
+ *
+ * 可先{@link #watch(String...)}监视key, 并通过{@link #send(Request)}在同一连接上读取数据,
+ * 再{@link #add(Request)}加入事务命令, {@link #exec()}时MULTI、所有命令与EXEC一次写出。
+ * 监视的key被其他客户端修改时事务被打断, exec返回false, 各命令的Future抛出异常, 可重新watch后重试
+ *
+ * 非线程安全, 所有操作都等待响应后返回
+ *
+ * @author zhangyancheng
+ */
+public class Transaction implements Closeable {
+	private final ConnectionPool connectionPool;
+	private final Connection connection;
+	private final List<Request<?>> requests = new ArrayList<>();
+	private final List<ResponsePromise<?>> promises = new ArrayList<>();
+	private boolean watching;
+	private boolean closed;
+
+	Transaction(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+		this.connection = connectionPool.borrowConnection();
+	}
+
+	/**
+	 * 监视key, 直到exec、unwatch或者discard
+	 *
+	 * @param keys key
+	 */
+	public void watch(String... keys) {
+		send(new Watch(keys));
+		watching = true;
+	}
+
+	/**
+	 * 取消所有监视
+	 */
+	public void unwatch() {
+		send(new Unwatch());
+		watching = false;
+	}
+
+	/**
+	 * 在事务连接上直接执行命令(不加入事务), 用于watch后读取数据
+	 *
+	 * @param request 请求
+	 * @param <R> 响应泛型
+	 * @return 响应
+	 */
+	public <R> R send(Request<R> request) {
+		checkOpen();
+		return connection.send(request).get();
+	}
+
+	/**
+	 * 加入事务命令
+	 *
+	 * @param request 请求
+	 * @param <R> 响应泛型
+	 * @return 命令响应Future, exec后结束
+	 */
+	public <R> Future<R> add(Request<R> request) {
+		checkOpen();
+		ResponsePromise<R> promise = new ResponsePromise<>(request.getCast());
+		requests.add(request);
+		promises.add(promise);
+		return promise;
+	}
+
+	/**
+	 * 执行事务, 之后可继续加入命令执行新的事务
+	 *
+	 * @return 是否执行, 监视的key被修改而打断时返回false
+	 * @throws ServerRespondException 命令错误(如命令不存在、参数个数错误)导致事务放弃执行
+	 */
+	public boolean exec() {
+		checkOpen();
+		List<Request<?>> transaction = new ArrayList<>(requests.size() + 2);
+		transaction.add(new Multi());
+		transaction.addAll(requests);
+		transaction.add(new Exec());
+		ResponsePromise<Boolean> promise = new ExecPromise(new ArrayList<>(promises));
+
+		requests.clear();
+		promises.clear();
+		//EXEC总是取消所有监视
+		watching = false;
+
+		connection.sendAll(transaction, promise);
+		return promise.get();
+	}
+
+	/**
+	 * 放弃已加入的命令(命令的Future抛出异常)并取消所有监视
+	 *
+	 * MULTI在exec时才与命令一起写出, 服务端没有开启的事务, 因此不发送DISCARD, 只在监视时发送UNWATCH
+	 */
+	public void discard() {
+		checkOpen();
+		RedisClientException discarded = new RedisClientException("Transaction discarded");
+		for (ResponsePromise<?> promise : promises) {
+			promise.response(discarded);
+		}
+		requests.clear();
+		promises.clear();
+		if (watching) {
+			unwatch();
+		}
+	}
+
+	/**
+	 * 放弃未执行的命令并归还连接
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		try {
+			if (connection.healthy) {
+				discard();
+			}
+		} finally {
+			closed = true;
+			connectionPool.returnConnection(connection);
+		}
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Transaction closed");
+		}
+	}
+
+	/**
+	 * 事务的Promise, 响应列表为MULTI、各命令(QUEUED)、EXEC的响应
+	 */
+	private static class ExecPromise extends ResponsePromise<Boolean> {
+		private final List<ResponsePromise<?>> promises;
+
+		ExecPromise(final List<ResponsePromise<?>> promises) {
+			super(new ResponseCast<Boolean>() {
+
+				@Override
+				public Boolean cast(Object response) {
+					List<?> replies = (List<?>) response;
+					Object execReply = replies.get(replies.size() - 1);
+					if (execReply instanceof List) {
+						List<?> results = (List<?>) execReply;
+						for (int i = 0; i < promises.size(); i++) {
+							promises.get(i).response(results.get(i));
+						}
+						return true;
+					}
+					if (execReply == null) {
+						RedisClientException aborted = new RedisClientException("Transaction aborted, watched keys modified");
+						for (ResponsePromise<?> promise : promises) {
+							promise.response(aborted);
+						}
+						return false;
+					}
+					//EXECABORT, 入队失败的命令响应自身的错误
+					ServerRespondException execAbort = new ServerRespondException(String.valueOf(execReply));
+					for (int i = 0; i < promises.size(); i++) {
+						Object queued = replies.get(i + 1);
+						promises.get(i).response("QUEUED".equals(queued) ? execAbort : queued);
+					}
+					throw execAbort;
+				}
+			});
+			this.promises = promises;
+		}
+
+		@Override
+		protected void onRespond() {
+			if (response instanceof Throwable) {
+				for (ResponsePromise<?> promise : promises) {
+					if (promise.getCount() > 0) {
+						promise.response(response);
+					}
+				}
+			}
+		}
+	}
+}
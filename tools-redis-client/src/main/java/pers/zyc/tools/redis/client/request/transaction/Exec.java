@@ -0,0 +1,51 @@
+package pers.zyc.tools.redis.client.request.transaction;
+
+import pers.zyc.tools.redis.client.ResponseCast;
+import pers.zyc.tools.redis.client.exception.RedisClientException;
+import pers.zyc.tools.redis.client.exception.ServerRespondException;
+import pers.zyc.tools.redis.client.request.AutoCastRequest;
+
+import java.util.List;
+
+/**
+ * EXEC
+ * </p>
+ *
+ * 执行所有事务块内的命令。
+ * 假如某个(或某些) key 正处于 WATCH 命令的监视之下，且事务块中有和这个(或这些) key 相关的命令，
+ * 那么 EXEC 命令只在这个(或这些) key 没有被其他命令所改动的情况下执行并生效，否则该事务被打断(abort)。
+ * </p>
+ *
+ * <ul>
+ * <li>时间复杂度: 事务块内所有命令的时间复杂度的总和。</li>
+ * <li>Redis版本要求: >=1.2.0</li>
+ * <li>返回值: 事务块内所有命令的返回值(未转换的原始响应)，按命令执行的先后顺序排列。
+ *     		  当操作被打断时，返回 null 。
+ * </li>
+ * </ul>
+ *
+ * @author zhangyancheng
+ */
+public class Exec extends AutoCastRequest<List<Object>> {
+
+	public Exec() {
+		super(EXEC_CAST);
+	}
+
+	private static final ResponseCast<List<Object>> EXEC_CAST = new ResponseCast<List<Object>>() {
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public List<Object> cast(Object response) {
+			if (response == null || response instanceof List) {
+				return (List<Object>) response;
+			}
+
+			if (response instanceof String) {
+				throw new ServerRespondException((String) response);
+			}
+
+			throw new RedisClientException("Cannot cast " + String.valueOf(response) + " to List");
+		}
+	};
+}
@@ -0,0 +1,22 @@
+package pers.zyc.tools.redis.client.request.transaction;
+
+import pers.zyc.tools.redis.client.request.AutoCastRequest;
+
+/**
+ * MULTI
+ * </p>
+ *
+ * 标记一个事务块的开始。
+ * 事务块内的多条命令会按照先后顺序被放进一个队列当中，最后由 EXEC 命令原子性(atomic)地执行。
+ * </p>
+ *
+ * <ul>
+ * <li>时间复杂度: O(1)</li>
+ * <li>Redis版本要求: >=1.2.0</li>
+ * <li>返回值: 总是返回 OK 。</li>
+ * </ul>
+ *
+ * @author zhangyancheng
+ */
+public class Multi extends AutoCastRequest<Void> {
+}
@@ -0,0 +1,22 @@
+package pers.zyc.tools.redis.client.request.transaction;
+
+import pers.zyc.tools.redis.client.request.AutoCastRequest;
+
+/**
+ * UNWATCH
+ * </p>
+ *
+ * 取消 WATCH 命令对所有 key 的监视。
+ * 如果在执行 WATCH 命令之后， EXEC 命令或 DISCARD 命令先被执行了的话，那么就不需要再执行 UNWATCH 了。
+ * </p>
+ *
+ * <ul>
+ * <li>时间复杂度: O(1)</li>
+ * <li>Redis版本要求: >=2.2.0</li>
+ * <li>返回值: 总是返回 OK 。</li>
+ * </ul>
+ *
+ * @author zhangyancheng
+ */
+public class Unwatch extends AutoCastRequest<Void> {
+}
@@ -0,0 +1,28 @@
+package pers.zyc.tools.redis.client.request.transaction;
+
+import pers.zyc.tools.redis.client.request.AutoCastRequest;
+import pers.zyc.tools.redis.client.util.ByteUtil;
+
+/**
+ * WATCH key [key ...]
+ * </p>
+ *
+ * 监视一个(或多个) key ，如果在事务执行之前这个(或这些) key 被其他命令所改动，那么事务将被打断。
+ * </p>
+ *
+ * <ul>
+ * <li>时间复杂度: O(1)</li>
+ * <li>Redis版本要求: >=2.2.0</li>
+ * <li>返回值: 总是返回 OK 。</li>
+ * </ul>
+ *
+ * @author zhangyancheng
+ */
+public class Watch extends AutoCastRequest<Void> {
+
+	public Watch(String... keys) {
+		for (String key : keys) {
+			bulks.add(ByteUtil.toByteArray(key));
+		}
+	}
+}
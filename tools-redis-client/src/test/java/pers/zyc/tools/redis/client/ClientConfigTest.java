@@ -21,4 +21,29 @@ public class ClientConfigTest {
 		Assert.assertTrue(3000 == config.getRequestTimeout());
 		Assert.assertTrue(4 == config.getNetWorkers());
 	}
+
+	@Test
+	public void case_StringConstruction_2_Pipelined() {
+		ClientConfig config = new ClientConfig("redis://localhost:6379?pipelineConnections=2");
+		Assert.assertTrue(2 == config.getPipelineConnections());
+	}
+
+	@Test
+	public void case_StringConstruction_3_NotPipelined() {
+		ClientConfig config = new ClientConfig("redis://localhost:6379");
+		Assert.assertTrue(0 == config.getPipelineConnections());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void case_StringConstruction_4_NegativePipelineConnections() {
+		new ClientConfig("redis://localhost:6379?pipelineConnections=-1");
+	}
+
+	@Test
+	public void case_StringConstruction_5_AutoBatch() {
+		ClientConfig config = new ClientConfig("redis://localhost:6379" +
+				"?pipelineConnections=1&pipelineBatchSize=32&pipelineBatchDelay=1");
+		Assert.assertTrue(32 == config.getPipelineBatchSize());
+		Assert.assertTrue(1 == config.getPipelineBatchDelay());
+	}
 }
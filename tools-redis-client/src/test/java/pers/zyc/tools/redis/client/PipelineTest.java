@@ -0,0 +1,100 @@
+package pers.zyc.tools.redis.client;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import pers.zyc.tools.redis.client.exception.ServerRespondException;
+import pers.zyc.tools.redis.client.request.string.Get;
+import pers.zyc.tools.redis.client.request.string.Increment;
+import pers.zyc.tools.redis.client.request.string.Set;
+import pers.zyc.tools.redis.client.util.Future;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 管道测试
+ *
+ * @author zhangyancheng
+ */
+public class PipelineTest {
+
+	private ScriptedServer server;
+	private AsyncClient client;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new ScriptedServer() {
+
+			@Override
+			protected String reply(List<String> command) {
+				switch (command.get(0)) {
+					case "SET":
+					case "QUIT":
+						return "+OK\r\n";
+					case "GET":
+						return "$5\r\nvalue\r\n";
+					case "INCR":
+						return "-ERR value is not an integer or out of range\r\n";
+					default:
+						return "-ERR unknown command '" + command.get(0) + "'\r\n";
+				}
+			}
+		};
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		server.close();
+	}
+
+	private void execute(String params) {
+		client = new AsyncClient(new ClientConfig(server.uri() + params));
+		Pipeline pipeline = client.createPipeline();
+		Future<Boolean> set = pipeline.add(new Set("key", "value"));
+		Future<String> get = pipeline.add(new Get("key"));
+		Future<Long> incr = pipeline.add(new Increment("key"));
+		Assert.assertEquals(3, pipeline.size());
+
+		Assert.assertNull(pipeline.execute().get());
+		Assert.assertTrue(set.get());
+		Assert.assertEquals("value", get.get());
+		//命令执行失败只由命令自身的Future抛出
+		try {
+			incr.get();
+			Assert.fail();
+		} catch (ServerRespondException e) {
+			Assert.assertEquals("ERR value is not an integer or out of range", e.getMessage());
+		}
+		Assert.assertEquals(Arrays.asList("SET key value", "GET key", "INCR key"), server.commands);
+	}
+
+	@Test
+	public void case_Execute() {
+		execute("");
+	}
+
+	@Test
+	public void case_Execute_Pipelined() {
+		execute("?pipelineConnections=1");
+	}
+
+	@Test
+	public void case_Execute_Empty() {
+		client = new AsyncClient(new ClientConfig(server.uri()));
+		Pipeline pipeline = client.createPipeline();
+		Assert.assertNull(pipeline.execute().get());
+		Assert.assertTrue(server.commands.isEmpty());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void case_Execute_Twice() {
+		client = new AsyncClient(new ClientConfig(server.uri()));
+		Pipeline pipeline = client.createPipeline();
+		pipeline.add(new Get("key"));
+		pipeline.execute().get();
+		pipeline.execute();
+	}
+}
@@ -0,0 +1,86 @@
+package pers.zyc.tools.redis.client;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import pers.zyc.tools.redis.client.exception.RedisClientException;
+import pers.zyc.tools.redis.client.util.Future;
+import pers.zyc.tools.utils.SystemMillis;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 管道连接超时测试, 服务端只接受连接不响应
+ *
+ * @author zhangyancheng
+ */
+public class PipelinedConnectionTest {
+
+	private static final int REQUEST_TIMEOUT = 300;
+
+	private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+	private ServerSocket serverSocket;
+	private AsyncClient client;
+
+	@Before
+	public void setUp() throws Exception {
+		serverSocket = new ServerSocket(0);
+		Thread acceptor = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						accepted.add(serverSocket.accept());
+					}
+				} catch (IOException ignored) {
+				}
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		client = new AsyncClient(new ClientConfig("redis://localhost:" + serverSocket.getLocalPort() +
+				"?requestTimeout=" + REQUEST_TIMEOUT + "&requestTimeoutDetectInterval=20&pipelineConnections=1"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		serverSocket.close();
+		for (Socket socket : accepted) {
+			socket.close();
+		}
+		client.close();
+	}
+
+	private static RedisClientException failure(Future<?> future) {
+		try {
+			future.get();
+		} catch (RedisClientException e) {
+			return e;
+		}
+		throw new AssertionError("Request not failed");
+	}
+
+	@Test
+	public void case_ResponseTimeout_ConnectionRebuilt() throws Exception {
+		Future<String> head = client._get("key1");
+		Thread.sleep(REQUEST_TIMEOUT / 2);
+		Future<String> queued = client._get("key2");
+
+		long begin = SystemMillis.current();
+		Assert.assertEquals("Request timeout!", failure(head).getMessage());
+		//头部请求超时后连接断开, 队列中未超时的请求立即失败
+		Assert.assertEquals("Connection broken, response timeout", failure(queued).getMessage());
+		Assert.assertTrue(SystemMillis.current() - begin < REQUEST_TIMEOUT);
+		Assert.assertEquals(1, accepted.size());
+
+		//下次获取时重建连接
+		failure(client._get("key3"));
+		Assert.assertEquals(2, accepted.size());
+	}
+}
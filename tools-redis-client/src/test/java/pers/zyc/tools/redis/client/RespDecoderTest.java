@@ -0,0 +1,65 @@
+package pers.zyc.tools.redis.client;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pers.zyc.tools.redis.client.exception.RedisClientException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RESP解码器测试
+ *
+ * @author zhangyancheng
+ */
+public class RespDecoderTest {
+
+	private static ByteBuffer buffer(String data) {
+		return ByteBuffer.wrap(data.getBytes());
+	}
+
+	@Test
+	public void case_Decode_SplitBulk() {
+		RespDecoder decoder = new RespDecoder();
+		//逐字节输入, 每次从断点继续
+		String data = "*2\r\n$5\r\nvalue\r\n:1\r\n";
+		for (int i = 0; i < data.length() - 1; i++) {
+			Assert.assertSame(RespDecoder.INCOMPLETE, decoder.decode(buffer(data.substring(i, i + 1))));
+		}
+		List<?> reply = (List<?>) decoder.decode(buffer(data.substring(data.length() - 1)));
+		Assert.assertArrayEquals("value".getBytes(), (byte[]) reply.get(0));
+		Assert.assertEquals(1L, reply.get(1));
+		Assert.assertFalse(decoder.isDecoding());
+	}
+
+	@Test
+	public void case_Decode_Nil() {
+		RespDecoder decoder = new RespDecoder();
+		ByteBuffer buffer = buffer("$-1\r\n*-1\r\n*0\r\n");
+		Assert.assertNull(decoder.decode(buffer));
+		Assert.assertNull(decoder.decode(buffer));
+		Assert.assertEquals(Arrays.asList(), decoder.decode(buffer));
+	}
+
+	@Test
+	public void case_Decode_BulkNotTerminated() {
+		RespDecoder decoder = new RespDecoder();
+		//块长度比实际数据短
+		try {
+			decoder.decode(buffer("$3\r\nvalue\r\n"));
+			Assert.fail();
+		} catch (RedisClientException e) {
+			Assert.assertEquals("Protocol error, bulk not terminated by CRLF", e.getMessage());
+		}
+
+		decoder = new RespDecoder();
+		Assert.assertSame(RespDecoder.INCOMPLETE, decoder.decode(buffer("$5\r\nvalue\r")));
+		try {
+			decoder.decode(buffer("+OK\r\n"));
+			Assert.fail();
+		} catch (RedisClientException e) {
+			Assert.assertEquals("Protocol error, bulk not terminated by CRLF", e.getMessage());
+		}
+	}
+}
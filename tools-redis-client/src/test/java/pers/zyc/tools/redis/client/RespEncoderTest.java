@@ -0,0 +1,121 @@
+package pers.zyc.tools.redis.client;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * RESP编码器测试, 发送缓冲满时不自旋, 保留未写出的数据
+ *
+ * @author zhangyancheng
+ */
+public class RespEncoderTest {
+
+	private ServerSocketChannel server;
+	private SocketChannel client;
+	private SocketChannel accepted;
+
+	private static class Echo extends Request<Void> {
+
+		Echo(byte[]... bulks) {
+			super(bulks);
+		}
+
+		@Override
+		public ResponseCast<Void> getCast() {
+			return null;
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress("localhost", 0));
+		client = SocketChannel.open(server.getLocalAddress());
+		client.setOption(StandardSocketOptions.SO_SNDBUF, 8192);
+		client.configureBlocking(false);
+		accepted = server.accept();
+		accepted.configureBlocking(false);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		accepted.close();
+		server.close();
+	}
+
+	private static byte[] bulk(int length, int seed) {
+		byte[] bulk = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bulk[i] = (byte) ('a' + (i + seed) % 26);
+		}
+		return bulk;
+	}
+
+	private static void append(ByteArrayOutputStream expected, byte[]... bulks) {
+		byte[] prefix = ("*" + (bulks.length + 1) + "\r\n$4\r\nECHO\r\n").getBytes();
+		expected.write(prefix, 0, prefix.length);
+		for (byte[] bulk : bulks) {
+			prefix = ("$" + bulk.length + "\r\n").getBytes();
+			expected.write(prefix, 0, prefix.length);
+			expected.write(bulk, 0, bulk.length);
+			expected.write('\r');
+			expected.write('\n');
+		}
+	}
+
+	/**
+	 * 服务端读取length字节, 读取期间调用flush继续写出
+	 */
+	private byte[] drain(RespEncoder encoder, int length) throws Exception {
+		ByteBuffer received = ByteBuffer.allocate(length);
+		boolean flushed = false;
+		while (received.hasRemaining()) {
+			if (!flushed) {
+				flushed = encoder.flush();
+			}
+			accepted.read(received);
+		}
+		Assert.assertTrue(flushed);
+		return received.array();
+	}
+
+	@Test
+	public void case_Flush_SendBufferFull() throws Exception {
+		RespEncoder encoder = new RespEncoder(client, ByteBuffer.allocate(8192));
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+		//大块聚集写出, 小块超出写buffer后写入临时buffer
+		byte[][] large = {bulk(1024 * 1024, 0), bulk(10, 1)};
+		encoder.encode(new Echo(large));
+		append(expected, large);
+		for (int i = 0; i < 2000; i++) {
+			byte[] small = bulk(100, i);
+			encoder.encode(new Echo(small));
+			append(expected, small);
+		}
+
+		long begin = System.nanoTime();
+		Assert.assertFalse(encoder.flush());
+		Assert.assertFalse(encoder.flush());
+		Assert.assertTrue(System.nanoTime() - begin < 1000000000L);
+
+		Assert.assertArrayEquals(expected.toByteArray(), drain(encoder, expected.size()));
+
+		//全部写出后再次编码使用写buffer
+		expected.reset();
+		byte[] small = bulk(20, 3);
+		encoder.encode(new Echo(small));
+		append(expected, small);
+		Assert.assertArrayEquals(expected.toByteArray(), drain(encoder, expected.size()));
+	}
+}
@@ -0,0 +1,119 @@
+package pers.zyc.tools.redis.client;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 测试用服务端, 解析RESP命令, 按脚本返回原始响应
+ *
+ * @author zhangyancheng
+ */
+abstract class ScriptedServer {
+
+	/**
+	 * 收到的命令(命令名 + 参数, 空格分隔)
+	 */
+	final List<String> commands = new CopyOnWriteArrayList<>();
+
+	private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+	private final ServerSocket serverSocket;
+
+	ScriptedServer() throws IOException {
+		serverSocket = new ServerSocket(0);
+		Thread acceptor = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						final Socket socket = serverSocket.accept();
+						accepted.add(socket);
+						Thread serve = new Thread() {
+							@Override
+							public void run() {
+								try {
+									serve(socket);
+								} catch (IOException ignored) {
+								}
+							}
+						};
+						serve.setDaemon(true);
+						serve.start();
+					}
+				} catch (IOException ignored) {
+				}
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * @return redis uri
+	 */
+	String uri() {
+		return "redis://localhost:" + serverSocket.getLocalPort();
+	}
+
+	/**
+	 * @param command 命令名(大写)与参数
+	 * @return 原始RESP响应
+	 */
+	protected abstract String reply(List<String> command);
+
+	void close() throws IOException {
+		serverSocket.close();
+		for (Socket socket : accepted) {
+			socket.close();
+		}
+	}
+
+	private void serve(Socket socket) throws IOException {
+		InputStream in = new BufferedInputStream(socket.getInputStream());
+		OutputStream out = socket.getOutputStream();
+		while (true) {
+			int bulks = Integer.parseInt(line(in).substring(1));
+			List<String> command = new ArrayList<>(bulks);
+			for (int i = 0; i < bulks; i++) {
+				byte[] bulk = new byte[Integer.parseInt(line(in).substring(1))];
+				for (int read = 0; read < bulk.length; ) {
+					int n = in.read(bulk, read, bulk.length - read);
+					if (n < 0) {
+						throw new EOFException();
+					}
+					read += n;
+				}
+				line(in);
+				command.add(new String(bulk, "UTF-8"));
+			}
+			command.set(0, command.get(0).toUpperCase());
+
+			StringBuilder joined = new StringBuilder();
+			for (String part : command) {
+				joined.append(joined.length() == 0 ? "" : " ").append(part);
+			}
+			commands.add(joined.toString());
+			out.write(reply(command).getBytes("UTF-8"));
+		}
+	}
+
+	private static String line(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int b;
+		while ((b = in.read()) != '\r') {
+			if (b < 0) {
+				throw new EOFException();
+			}
+			line.append((char) b);
+		}
+		in.read();
+		return line.toString();
+	}
+}
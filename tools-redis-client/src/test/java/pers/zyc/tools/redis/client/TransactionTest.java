@@ -0,0 +1,164 @@
+package pers.zyc.tools.redis.client;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import pers.zyc.tools.redis.client.exception.RedisClientException;
+import pers.zyc.tools.redis.client.exception.ServerRespondException;
+import pers.zyc.tools.redis.client.request.string.Get;
+import pers.zyc.tools.redis.client.request.string.Increment;
+import pers.zyc.tools.redis.client.request.string.MGet;
+import pers.zyc.tools.redis.client.request.string.Set;
+import pers.zyc.tools.redis.client.util.Future;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 事务测试, 覆盖EXEC、EXECABORT与被打断(nil)的EXEC响应
+ *
+ * @author zhangyancheng
+ */
+public class TransactionTest {
+
+	private static final String EXEC_ABORT = "EXECABORT Transaction discarded because of previous errors.";
+
+	/**
+	 * EXEC的原始响应
+	 */
+	private volatile String execReply;
+
+	/**
+	 * INCR入队时的原始响应
+	 */
+	private volatile String incrQueued = "+QUEUED\r\n";
+
+	private ScriptedServer server;
+	private AsyncClient client;
+	private Transaction transaction;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new ScriptedServer() {
+			private boolean multi;
+
+			@Override
+			protected String reply(List<String> command) {
+				switch (command.get(0)) {
+					case "MULTI":
+						multi = true;
+						return "+OK\r\n";
+					case "EXEC":
+						multi = false;
+						return execReply;
+					case "INCR":
+						return multi ? incrQueued : ":1\r\n";
+					case "GET":
+						return multi ? "+QUEUED\r\n" : "$1\r\n1\r\n";
+					default:
+						return multi ? "+QUEUED\r\n" : "+OK\r\n";
+				}
+			}
+		};
+		client = new AsyncClient(new ClientConfig(server.uri()));
+		transaction = client.createTransaction();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		transaction.close();
+		client.close();
+		server.close();
+	}
+
+	private static RedisClientException failure(Future<?> future) {
+		try {
+			future.get();
+		} catch (RedisClientException e) {
+			return e;
+		}
+		throw new AssertionError("Request not failed");
+	}
+
+	@Test
+	public void case_Exec() {
+		execReply = "*3\r\n+OK\r\n:2\r\n$1\r\n2\r\n";
+		Future<Boolean> set = transaction.add(new Set("key", "1"));
+		Future<Long> incr = transaction.add(new Increment("key"));
+		Future<String> get = transaction.add(new Get("key"));
+
+		Assert.assertTrue(transaction.exec());
+		Assert.assertTrue(set.get());
+		Assert.assertEquals(Long.valueOf(2), incr.get());
+		Assert.assertEquals("2", get.get());
+		Assert.assertEquals(Arrays.asList("MULTI", "SET key 1", "INCR key", "GET key", "EXEC"), server.commands);
+	}
+
+	@Test
+	public void case_Exec_NestedReply() {
+		//EXEC结果中的多块响应原样交给命令
+		execReply = "*2\r\n*2\r\n$1\r\na\r\n$-1\r\n:1\r\n";
+		Future<List<String>> mget = transaction.add(new MGet("a", "b"));
+		Future<Long> incr = transaction.add(new Increment("key"));
+
+		Assert.assertTrue(transaction.exec());
+		Assert.assertEquals(Arrays.asList("a", null), mget.get());
+		Assert.assertEquals(Long.valueOf(1), incr.get());
+	}
+
+	@Test
+	public void case_ExecAbort() {
+		incrQueued = "-ERR wrong number of arguments for 'incr' command\r\n";
+		execReply = "-" + EXEC_ABORT + "\r\n";
+		Future<Boolean> set = transaction.add(new Set("key", "1"));
+		Future<Long> incr = transaction.add(new Increment("key"));
+
+		try {
+			transaction.exec();
+			Assert.fail();
+		} catch (ServerRespondException e) {
+			Assert.assertEquals(EXEC_ABORT, e.getMessage());
+		}
+		//入队成功的命令响应EXECABORT, 入队失败的命令响应自身的错误
+		Assert.assertEquals(EXEC_ABORT, failure(set).getMessage());
+		RedisClientException incrFailure = failure(incr);
+		Assert.assertTrue(incrFailure instanceof ServerRespondException);
+		Assert.assertEquals("ERR wrong number of arguments for 'incr' command", incrFailure.getMessage());
+	}
+
+	@Test
+	public void case_Exec_Aborted() {
+		execReply = "*-1\r\n";
+		transaction.watch("key");
+		Assert.assertEquals("1", transaction.send(new Get("key")));
+		Future<Boolean> set = transaction.add(new Set("key", "2"));
+
+		Assert.assertFalse(transaction.exec());
+		Assert.assertEquals("Transaction aborted, watched keys modified", failure(set).getMessage());
+
+		//EXEC取消所有监视, 可重新watch后重试
+		execReply = "*1\r\n+OK\r\n";
+		transaction.watch("key");
+		set = transaction.add(new Set("key", "2"));
+		Assert.assertTrue(transaction.exec());
+		Assert.assertTrue(set.get());
+	}
+
+	@Test
+	public void case_Discard() {
+		transaction.watch("key");
+		Future<Boolean> set = transaction.add(new Set("key", "1"));
+		transaction.discard();
+
+		Assert.assertEquals("Transaction discarded", failure(set).getMessage());
+		//MULTI未写出, 只取消监视
+		Assert.assertEquals(Arrays.asList("WATCH key", "UNWATCH"), server.commands);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void case_Closed() {
+		transaction.close();
+		transaction.add(new Get("key"));
+	}
+}